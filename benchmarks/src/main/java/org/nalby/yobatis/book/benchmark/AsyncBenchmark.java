@@ -0,0 +1,78 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.nalby.yobatis.book.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up {@link #FAN_OUT} books one after another through the blocking dao, against all at
+ * once through the async dao. Each statement is delayed by {@code delayMicros} to stand in for
+ * the network, without which a lookup costs less than handing it to another thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+@State(Scope.Benchmark)
+public class AsyncBenchmark {
+
+    private static final int FAN_OUT = 8;
+
+    private static final int BOOKS = 1000;
+
+    @Param({"0", "500"})
+    public long delayMicros;
+
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp(DaoState state) {
+        state.resetBooks(BOOKS, 10);
+        state.dataSource.setDelayMicros(delayMicros);
+    }
+
+    /*
+     * Distinct ids on every call, so concurrent lookups are not coalesced into one.
+     */
+    private long nextId() {
+        next = next % BOOKS + 1;
+        return next;
+    }
+
+    @Benchmark
+    public List<Book> fanOutSequential(DaoState state) {
+        List<Book> books = new ArrayList<>(FAN_OUT);
+        for (int i = 0; i < FAN_OUT; i++) {
+            books.add(state.bookDao.selectOne(nextId()));
+        }
+        return books;
+    }
+
+    @Benchmark
+    public List<Book> fanOutAsync(DaoState state) {
+        List<CompletableFuture<Book>> futures = new ArrayList<>(FAN_OUT);
+        for (int i = 0; i < FAN_OUT; i++) {
+            futures.add(state.asyncBookDao.selectOne(nextId()));
+        }
+        List<Book> books = new ArrayList<>(FAN_OUT);
+        for (CompletableFuture<Book> future : futures) {
+            books.add(future.join());
+        }
+        return books;
+    }
+}
@@ -0,0 +1,106 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.nalby.yobatis.book.mapper.BookDao;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.BookColumns;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Scans of books already read, as a list of books against {@link BookColumns}: counting the books
+ * of each author and the books whose name has a prefix, and reading the books either way. The heap
+ * each retains, as measured by JOL, is printed once set up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+@State(Scope.Benchmark)
+public class ColumnScanBenchmark {
+
+    private static final int BOOKS = 100000;
+
+    private static final int AUTHORS = 100;
+
+    private static final String PREFIX = "book-99";
+
+    private static final byte[] PREFIX_BYTES = PREFIX.getBytes(StandardCharsets.UTF_8);
+
+    private BookDao bookDao;
+
+    private List<Book> books;
+
+    private BookColumns columns;
+
+    @Setup(Level.Trial)
+    public void setUp(DaoState state) {
+        state.resetBooks(BOOKS, AUTHORS);
+        bookDao = state.bookDao;
+        books = selectList();
+        columns = selectColumns();
+        System.out.printf("%nRetained by %d books: list %d bytes, columns %d bytes (estimated %d).%n", BOOKS,
+                GraphLayout.parseInstance(books).totalSize(), GraphLayout.parseInstance(columns).totalSize(),
+                columns.getHeapBytes());
+    }
+
+    @Benchmark
+    public List<Book> selectList() {
+        return bookDao.selectList(new BookCriteria().andIdLessThanOrEqualTo((long) BOOKS));
+    }
+
+    @Benchmark
+    public BookColumns selectColumns() {
+        return bookDao.selectColumns(new BookCriteria().andIdLessThanOrEqualTo((long) BOOKS));
+    }
+
+    @Benchmark
+    public Map<Long, Integer> countByAuthorList() {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Book book : books) {
+            if (book.getAuthor() != null) {
+                counts.merge(book.getAuthor(), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public int[] countByAuthorColumns() {
+        int[] counts = new int[AUTHORS];
+        columns.groupByAuthor((author, rows, from, to) -> counts[(int) author] = to - from);
+        return counts;
+    }
+
+    @Benchmark
+    public int countNamePrefixList() {
+        int count = 0;
+        for (Book book : books) {
+            if (book.getName() != null && book.getName().startsWith(PREFIX)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int countNamePrefixColumns() {
+        return columns.count(row -> columns.nameStartsWith(row, PREFIX_BYTES));
+    }
+}
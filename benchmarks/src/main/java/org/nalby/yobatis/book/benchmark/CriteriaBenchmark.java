@@ -0,0 +1,96 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.nalby.yobatis.book.model.criteria.AuthorCriteria;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+/**
+ * Building criteria, and rendering the 'where' clause of selectByCriteria with the shape cache of
+ * mybatis-config.xml against the plain XML language driver.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+@State(Scope.Benchmark)
+public class CriteriaBenchmark {
+
+    private static final String SELECT_BY_CRITERIA = "org.nalby.yobatis.book.mapper.impl.BookDaoImpl.selectByCriteria";
+
+    private final List<Long> ids = Arrays.asList(1L, 2L, 3L, 5L, 8L, 13L, 21L, 34L, 55L, 89L);
+
+    private MappedStatement shapeCached;
+
+    private MappedStatement plain;
+
+    private BookCriteria criteria;
+
+    @Setup
+    public void setUp() throws Exception {
+        shapeCached = configuration(true).getMappedStatement(SELECT_BY_CRITERIA);
+        plain = configuration(false).getMappedStatement(SELECT_BY_CRITERIA);
+        criteria = buildBookCriteria();
+    }
+
+    private static Configuration configuration(boolean shapeCached) throws Exception {
+        SqlSessionFactoryBean factory = new SqlSessionFactoryBean();
+        // Rendering never connects.
+        factory.setDataSource(new SimpleDriverDataSource());
+        factory.setMapperLocations(new PathMatchingResourcePatternResolver().getResources("classpath:mybatis-mappers/*.xml"));
+        if (shapeCached) {
+            factory.setConfigLocation(new ClassPathResource("mybatis-config.xml"));
+        } else {
+            factory.setTypeAliasesPackage("org.nalby.yobatis.book.model");
+        }
+        return factory.getObject().getConfiguration();
+    }
+
+    @Benchmark
+    public BookCriteria buildBookCriteria() {
+        return new BookCriteria()
+                .andAuthorEqualTo(7L)
+                .andNameLike("book-1%")
+                .or()
+                .andIdIn(ids)
+                .descOrderBy("id")
+                .setLimit(20L);
+    }
+
+    @Benchmark
+    public AuthorCriteria buildAuthorCriteria() {
+        return new AuthorCriteria()
+                .andNameEqualTo("author")
+                .andIdBetween(1L, 100L)
+                .ascOrderBy("name");
+    }
+
+    @Benchmark
+    public BoundSql renderWhereClauseShapeCached() {
+        return shapeCached.getBoundSql(criteria);
+    }
+
+    @Benchmark
+    public BoundSql renderWhereClausePlain() {
+        return plain.getBoundSql(criteria);
+    }
+}
@@ -0,0 +1,53 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads through the daos, each one a round trip to the in-memory database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+@State(Scope.Benchmark)
+public class DaoBenchmark {
+
+    private static final int BOOKS = 10000;
+
+    private static final int AUTHORS = 100;
+
+    @Setup(Level.Trial)
+    public void setUp(DaoState state) {
+        state.resetBooks(BOOKS, AUTHORS);
+    }
+
+    @Benchmark
+    public Book selectOneByPk(DaoState state) {
+        return state.bookDao.selectOne(ThreadLocalRandom.current().nextLong(1, BOOKS + 1));
+    }
+
+    /**
+     * Maps the {@code BOOKS / AUTHORS} books of an author.
+     */
+    @Benchmark
+    public List<Book> selectListByAuthor(DaoState state) {
+        long author = ThreadLocalRandom.current().nextLong(AUTHORS);
+        return state.bookDao.selectList(new BookCriteria().andAuthorEqualTo(author));
+    }
+}
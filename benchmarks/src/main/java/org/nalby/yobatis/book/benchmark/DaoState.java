@@ -0,0 +1,70 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.nalby.yobatis.book.mapper.AsyncBaseDao;
+import org.nalby.yobatis.book.mapper.AuthorDao;
+import org.nalby.yobatis.book.mapper.BookDao;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.base.BaseBook;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The daos of benchmark-context.xml, on an empty database.
+ */
+@State(Scope.Benchmark)
+public class DaoState {
+
+    GenericXmlApplicationContext context;
+
+    BookDao bookDao;
+
+    AuthorDao authorDao;
+
+    AsyncBaseDao<Book, BaseBook, Long> asyncBookDao;
+
+    DelayingDataSource dataSource;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new GenericXmlApplicationContext("classpath:benchmark-context.xml");
+        bookDao = context.getBean(BookDao.class);
+        authorDao = context.getBean(AuthorDao.class);
+        asyncBookDao = context.getBean("asyncBookDao", AsyncBaseDao.class);
+        dataSource = context.getBean("dataSource", DelayingDataSource.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Replace the books with {@code count} books of ids 1 to count, spread evenly over {@code authors} authors.
+     */
+    void resetBooks(int count, int authors) {
+        new JdbcTemplate(dataSource).execute("truncate table book");
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            books.add(book((long) i, "book-" + i, (long) (i % authors)));
+        }
+        if (!books.isEmpty()) {
+            bookDao.insertAllBatch(books);
+        }
+    }
+
+    static Book book(Long id, String name, Long author) {
+        Book book = new Book();
+        book.setId(id);
+        book.setName(name);
+        book.setAuthor(author);
+        return book;
+    }
+}
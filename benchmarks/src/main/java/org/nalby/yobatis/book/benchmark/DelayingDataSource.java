@@ -0,0 +1,77 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Adds a fixed delay to every statement execution, standing in for the network round trip to a
+ * remote database that an in-memory database does not have.
+ */
+public class DelayingDataSource extends DelegatingDataSource {
+
+    private volatile long delayNanos;
+
+    public DelayingDataSource(DataSource target) {
+        super(target);
+    }
+
+    public void setDelayMicros(long delayMicros) {
+        this.delayNanos = TimeUnit.MICROSECONDS.toNanos(delayMicros);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class},
+                new Handler(connection));
+    }
+
+    private class Handler implements InvocationHandler {
+
+        private final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith("execute") && delayNanos > 0) {
+                LockSupport.parkNanos(delayNanos);
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof PreparedStatement) {
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class},
+                        new Handler(result));
+            }
+            if (result instanceof Statement) {
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Statement.class},
+                        new Handler(result));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Lets H2 run the MySQL mappers: statements ignore the negative fetch size with which the
+ * streaming statements ask Connector/J to stream, H2 rejects it and streams large results anyway.
+ */
+public class H2CompatibleDataSource extends DelegatingDataSource {
+
+    public H2CompatibleDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return (Connection) proxy(Connection.class, super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return (Connection) proxy(Connection.class, super.getConnection(username, password));
+    }
+
+    private static Object proxy(Class<?> type, Object target) {
+        return Proxy.newProxyInstance(H2CompatibleDataSource.class.getClassLoader(), new Class<?>[] {type},
+                new Handler(target));
+    }
+
+    private static class Handler implements InvocationHandler {
+
+        private final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("setFetchSize".equals(method.getName()) && (Integer) args[0] < 0) {
+                return null;
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (target instanceof Connection && result instanceof Statement) {
+                // Keeps the most specific statement interface, PreparedStatement or CallableStatement.
+                return proxy(method.getReturnType(), result);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.response.JsonWriters;
+import org.nalby.yobatis.book.response.Response;
+import org.nalby.yobatis.book.response.StreamingJsonResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Serializing responses the way the message converter of Spring MVC does, with one shared
+ * {@code ObjectMapper}, and a list the way the streaming endpoint does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    private static final int LIST_SIZE = 100;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private Book book;
+
+    private List<Book> books;
+
+    @Setup
+    public void setUp() {
+        book = DaoState.book(42L, "The Name of the Book", 7L);
+        books = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            books.add(DaoState.book((long) i, "book-" + i, (long) (i % 10)));
+        }
+    }
+
+    @Benchmark
+    public byte[] responseOfBook() throws Exception {
+        return mapper.writeValueAsBytes(Response.ok(book));
+    }
+
+    @Benchmark
+    public byte[] responseOfBooks() throws Exception {
+        return mapper.writeValueAsBytes(Response.ok(books));
+    }
+
+    @Benchmark
+    public byte[] streamedResponseOfBooks() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(8192);
+        StreamingJsonResponse<Book> response = new StreamingJsonResponse<>(output, JsonWriters.BOOK);
+        for (Book row : books) {
+            response.test(row);
+        }
+        response.finish();
+        return output.toByteArray();
+    }
+}
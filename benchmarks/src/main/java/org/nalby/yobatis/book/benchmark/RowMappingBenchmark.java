@@ -0,0 +1,88 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.nalby.yobatis.book.mapper.impl.BookRowMapper;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.plugin.RowMappingInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+/**
+ * Rows read per second by selectByCriteria, mapped by the result map of BookMapper.xml against
+ * {@link BookRowMapper}. Both session factories use the plain XML language driver, and the
+ * statement selects the whole table, so that they only differ in how rows are mapped.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+@OperationsPerInvocation(RowMappingBenchmark.ROWS)
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+
+    static final int ROWS = 1000;
+
+    private static final String SELECT_BY_CRITERIA = "org.nalby.yobatis.book.mapper.impl.BookDaoImpl.selectByCriteria";
+
+    private static final String BOOK_RESULT_MAP = "org.nalby.yobatis.book.mapper.impl.BookDaoImpl.BASE_RESULT_MAP";
+
+    private SqlSessionFactory resultMapped;
+
+    private SqlSessionFactory rowMapped;
+
+    @Setup(Level.Trial)
+    public void setUp(DaoState state) throws Exception {
+        state.resetBooks(ROWS, 10);
+        resultMapped = sessionFactory(state, false);
+        rowMapped = sessionFactory(state, true);
+    }
+
+    private static SqlSessionFactory sessionFactory(DaoState state, boolean rowMapped) throws Exception {
+        SqlSessionFactoryBean factory = new SqlSessionFactoryBean();
+        factory.setDataSource(state.dataSource);
+        factory.setMapperLocations(new PathMatchingResourcePatternResolver().getResources("classpath:mybatis-mappers/*.xml"));
+        factory.setTypeAliasesPackage("org.nalby.yobatis.book.model");
+        if (rowMapped) {
+            RowMappingInterceptor interceptor = new RowMappingInterceptor();
+            Properties properties = new Properties();
+            properties.setProperty(BOOK_RESULT_MAP, BookRowMapper.class.getName());
+            interceptor.setProperties(properties);
+            factory.setPlugins(new Interceptor[] {interceptor});
+        }
+        return factory.getObject();
+    }
+
+    private static List<Book> selectAll(SqlSessionFactory factory) {
+        try (SqlSession session = factory.openSession()) {
+            return session.selectList(SELECT_BY_CRITERIA, null);
+        }
+    }
+
+    @Benchmark
+    public List<Book> selectWithResultMap() {
+        return selectAll(resultMapped);
+    }
+
+    @Benchmark
+    public List<Book> selectWithRowMapper() {
+        return selectAll(rowMapped);
+    }
+}
@@ -0,0 +1,79 @@
+package org.nalby.yobatis.book.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.nalby.yobatis.book.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rows written per second by single-row inserts against the batch writes of {@code BaseDao}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+@OperationsPerInvocation(WriteBenchmark.ROWS)
+@State(Scope.Benchmark)
+public class WriteBenchmark {
+
+    static final int ROWS = 1000;
+
+    /*
+     * Starts every iteration with ROWS books, of ids 1 to ROWS, for the updates to find.
+     */
+    @Setup(Level.Iteration)
+    public void setUp(DaoState state) {
+        state.resetBooks(ROWS, 10);
+    }
+
+    private static List<Book> books(Long firstId) {
+        List<Book> books = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            books.add(DaoState.book(firstId == null ? null : firstId + i, "book-" + i, (long) (i % 10)));
+        }
+        return books;
+    }
+
+    @Benchmark
+    public int insertOneByOne(DaoState state) {
+        int inserted = 0;
+        for (Book book : books(null)) {
+            inserted += state.bookDao.insert(book);
+        }
+        return inserted;
+    }
+
+    /**
+     * JDBC batches of single-row inserts.
+     */
+    @Benchmark
+    public int insertBatch(DaoState state) {
+        return state.bookDao.insertBatch(books(null));
+    }
+
+    /**
+     * Multi-row inserts.
+     */
+    @Benchmark
+    public int insertAllBatch(DaoState state) {
+        return state.bookDao.insertAllBatch(books(null));
+    }
+
+    @Benchmark
+    public int[] updateBatch(DaoState state) {
+        return state.bookDao.updateBatch(books(1L));
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * JMH benchmarks of the criteria, the daos and the JSON responses. Results are written as JSON
+ * with '-rf json', to be compared across commits.
+ */
+package org.nalby.yobatis.book.benchmark;
@@ -0,0 +1,57 @@
+package org.nalby.yobatis.book.loadtest;
+
+import java.util.Random;
+
+/**
+ * The endpoints of the book controller, requested with the names and authors of the seeded books.
+ */
+public enum Endpoint {
+
+    BY_NAME("byName", "/book/{name}") {
+        @Override
+        String path(Random random, int books, int authors) {
+            return "/book/" + LoadTest.bookName(random.nextInt(books) + 1);
+        }
+    },
+
+    BY_NAME_OR_AUTHOR("byNameOrAuthor", "/book/{bookName}/{authorName}") {
+        @Override
+        String path(Random random, int books, int authors) {
+            return "/book/" + LoadTest.bookName(random.nextInt(books) + 1) + "/" + (random.nextInt(authors) + 1);
+        }
+    };
+
+    private final String key;
+
+    private final String template;
+
+    Endpoint(String key, String template) {
+        this.key = key;
+        this.template = template;
+    }
+
+    /**
+     * @return the name of the endpoint in the '--mix' option.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return a path to request, of a random book or author among the seeded ones.
+     */
+    abstract String path(Random random, int books, int authors);
+
+    static Endpoint ofKey(String key) {
+        for (Endpoint endpoint : values()) {
+            if (endpoint.key.equals(key)) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException("Unknown endpoint " + key + ".");
+    }
+}
@@ -0,0 +1,70 @@
+package org.nalby.yobatis.book.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * The responses of one endpoint. Every response, failed or not, records two latencies: from the
+ * time the request was due, which is what a user arriving at that time would have waited, and
+ * from the time it was actually sent. The first is corrected for coordinated omission: when the
+ * generator or the connection pool falls behind, the wait before sending is not lost.
+ */
+class EndpointStats {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder latencies = new Recorder(SIGNIFICANT_DIGITS);
+
+    private final Recorder serviceTimes = new Recorder(SIGNIFICANT_DIGITS);
+
+    private final LongAdder successes = new LongAdder();
+
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    /**
+     * @param error the kind of error, null if the response is a success.
+     */
+    void record(String error, long sinceDueNanos, long sinceSentNanos) {
+        latencies.recordValue(Math.max(sinceDueNanos, 0));
+        serviceTimes.recordValue(Math.max(sinceSentNanos, 0));
+        if (error == null) {
+            successes.increment();
+        } else {
+            errors.computeIfAbsent(error, kind -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * @return the latencies from the due time recorded since the last call, in nanoseconds.
+     */
+    Histogram takeLatencies() {
+        return latencies.getIntervalHistogram();
+    }
+
+    /**
+     * @return the latencies from the send time recorded since the last call, in nanoseconds.
+     */
+    Histogram takeServiceTimes() {
+        return serviceTimes.getIntervalHistogram();
+    }
+
+    long getSuccesses() {
+        return successes.sum();
+    }
+
+    /**
+     * @return the number of errors by kind.
+     */
+    Map<String, Long> getErrors() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : errors.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,146 @@
+package org.nalby.yobatis.book.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Sends requests at a fixed rate regardless of how fast responses come back, as independent users
+ * would: an open model. Requests are sent asynchronously from a single thread, each due at
+ * {@code start + i / rps}; a slow server shows as latency and errors instead of a lower rate.
+ */
+class LoadGenerator {
+
+    private static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client;
+
+    private final String host;
+
+    private final int port;
+
+    private final Endpoint[] endpoints;
+
+    private final int[] cumulativeWeights;
+
+    private final int books;
+
+    private final int authors;
+
+    private final long timeoutMillis;
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    /**
+     * @param mix the relative number of requests of each endpoint.
+     */
+    LoadGenerator(HttpClient client, String host, int port, Map<Endpoint, Integer> mix, int books, int authors,
+            long timeoutMillis) {
+        this.client = client;
+        this.host = host;
+        this.port = port;
+        this.endpoints = mix.keySet().toArray(new Endpoint[0]);
+        this.cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += mix.get(endpoints[i]);
+            cumulativeWeights[i] = total;
+        }
+        this.books = books;
+        this.authors = authors;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Send requests for the warmup then the measured duration, and wait for the responses.
+     * @return the stats of the requests due during the measured duration, by endpoint.
+     */
+    Map<Endpoint, EndpointStats> run(double rps, long warmupSeconds, long durationSeconds) throws InterruptedException {
+        Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : endpoints) {
+            stats.put(endpoint, new EndpointStats());
+        }
+        Random random = new Random();
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        for (long i = 0;; i++) {
+            long due = start + (long) (i * intervalNanos);
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint endpoint = choose(random);
+            send(endpoint.path(random, books, authors), due, due >= measureFrom ? stats.get(endpoint) : null);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis * 2);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return stats;
+    }
+
+    private Endpoint choose(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        throw new IllegalStateException("Weights must be positive.");
+    }
+
+    /*
+     * Responses are recorded into stats, unless it's null.
+     */
+    private void send(String path, long due, EndpointStats stats) {
+        inFlight.incrementAndGet();
+        long sent = System.nanoTime();
+        client.newRequest(host, port)
+            .path(path)
+            .timeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .send(new BufferingResponseListener(MAX_BODY_BYTES) {
+                @Override
+                public void onComplete(Result result) {
+                    long now = System.nanoTime();
+                    if (stats != null) {
+                        stats.record(error(result, getContent()), now - due, now - sent);
+                    }
+                    inFlight.decrementAndGet();
+                }
+            });
+    }
+
+    /*
+     * A success is a 200 response whose body has code 200 too: timeouts and a full executor are
+     * answered with code 503 in a 200 response.
+     */
+    private static String error(Result result, byte[] body) {
+        if (result.isFailed()) {
+            return result.getFailure().getClass().getSimpleName();
+        }
+        int status = result.getResponse().getStatus();
+        if (status != 200) {
+            return "http " + status;
+        }
+        try {
+            int code = MAPPER.readTree(body).path("code").asInt(-1);
+            return code == 200 ? null : "code " + code;
+        } catch (Exception e) {
+            return "unreadable body";
+        }
+    }
+}
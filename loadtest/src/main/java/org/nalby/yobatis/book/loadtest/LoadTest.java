@@ -0,0 +1,208 @@
+package org.nalby.yobatis.book.loadtest;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.nalby.yobatis.book.mapper.AuthorDao;
+import org.nalby.yobatis.book.mapper.BookDao;
+import org.nalby.yobatis.book.model.Author;
+import org.nalby.yobatis.book.model.Book;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+
+/**
+ * Starts the webapp from its web.xml in an embedded Jetty, with the data sources replaced by an
+ * in-memory H2 database (see loadtest-context.xml), seeds books and authors, drives the endpoints
+ * at a fixed rate and reports the latencies, throughput and errors of each endpoint. The latency
+ * histograms are also written to {@code <out>/<endpoint>.hgrm}, in milliseconds.
+ */
+public class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("rps", "200");
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("duration", "30");
+        DEFAULTS.put("books", "10000");
+        DEFAULTS.put("authors", "100");
+        DEFAULTS.put("mix", "byName:90,byNameOrAuthor:10");
+        DEFAULTS.put("connections", "256");
+        DEFAULTS.put("timeoutMillis", "10000");
+        DEFAULTS.put("port", "0");
+        DEFAULTS.put("webapp", "../src/main/webapp");
+        DEFAULTS.put("out", "target/loadtest");
+    }
+
+    private static final int SEED_CHUNK = 10000;
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("logback.configurationFile") == null) {
+            System.setProperty("logback.configurationFile", "loadtest-logback.xml");
+        }
+        Map<String, String> options;
+        int books;
+        int authors;
+        long warmup;
+        long duration;
+        double rps;
+        Map<Endpoint, Integer> mix;
+        try {
+            options = parse(args);
+            books = Integer.parseInt(options.get("books"));
+            authors = Integer.parseInt(options.get("authors"));
+            warmup = Long.parseLong(options.get("warmup"));
+            duration = Long.parseLong(options.get("duration"));
+            rps = Double.parseDouble(options.get("rps"));
+            mix = parseMix(options.get("mix"));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Options, with their defaults: " + DEFAULTS);
+            System.exit(2);
+            return;
+        }
+
+        WebAppContext webapp = new WebAppContext();
+        Server server = startServer(Integer.parseInt(options.get("port")), options.get("webapp"), webapp);
+        HttpClient client = new HttpClient();
+        try {
+            seed(WebApplicationContextUtils.getRequiredWebApplicationContext(webapp.getServletContext()), books, authors);
+            int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+            client.setMaxConnectionsPerDestination(Integer.parseInt(options.get("connections")));
+            // Enough to queue every request sent within the timeout, the queue is allocated upfront.
+            long timeoutMillis = Long.parseLong(options.get("timeoutMillis"));
+            client.setMaxRequestsQueuedPerDestination((int) Math.min(Math.max(rps * timeoutMillis / 1000, 1024), 1 << 22));
+            client.start();
+            LoadGenerator generator = new LoadGenerator(client, "localhost", port, mix, books, authors, timeoutMillis);
+            System.out.printf("%.1f requests/s to port %d for %ds after %ds of warmup.%n", rps, port, duration, warmup);
+            Map<Endpoint, EndpointStats> stats = generator.run(rps, warmup, duration);
+            report(stats, duration, new File(options.get("out")));
+        } finally {
+            client.stop();
+            server.stop();
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0 || !DEFAULTS.containsKey(arg.substring(2, equals))) {
+                throw new IllegalArgumentException("Unknown option " + arg + ".");
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.trim().split(":");
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Endpoint.ofKey(pair[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no endpoint.");
+        }
+        return weights;
+    }
+
+    private static Server startServer(int port, String webappDirectory, WebAppContext webapp) throws Exception {
+        Server server = new Server(port);
+        webapp.setContextPath("/");
+        webapp.setResourceBase(webappDirectory);
+        webapp.setOverrideDescriptor(LoadTest.class.getResource("/loadtest-web.xml").toExternalForm());
+        // The classes of the webapp are those of this jar.
+        webapp.setParentLoaderPriority(true);
+        webapp.setThrowUnavailableOnStartupException(true);
+        server.setHandler(webapp);
+        server.start();
+        return server;
+    }
+
+    static String bookName(int id) {
+        return "book-" + id;
+    }
+
+    /*
+     * Books of ids 1 to books, spread evenly over the authors of ids 1 to authors.
+     */
+    private static void seed(WebApplicationContext context, int books, int authors) {
+        AuthorDao authorDao = context.getBean(AuthorDao.class);
+        BookDao bookDao = context.getBean(BookDao.class);
+        List<Author> authorChunk = new ArrayList<>();
+        for (int i = 1; i <= authors; i++) {
+            Author author = new Author();
+            author.setId((long) i);
+            author.setName("author-" + i);
+            Calendar birthday = Calendar.getInstance();
+            birthday.set(1900 + i % 100, i % 12, i % 28 + 1);
+            author.setBirthday(birthday.getTime());
+            authorChunk.add(author);
+            if (authorChunk.size() == SEED_CHUNK || i == authors) {
+                authorDao.insertAllBatch(authorChunk);
+                authorChunk.clear();
+            }
+        }
+        List<Book> bookChunk = new ArrayList<>();
+        for (int i = 1; i <= books; i++) {
+            Book book = new Book();
+            book.setId((long) i);
+            book.setName(bookName(i));
+            book.setAuthor((long) (i % authors + 1));
+            bookChunk.add(book);
+            if (bookChunk.size() == SEED_CHUNK || i == books) {
+                bookDao.insertAllBatch(bookChunk);
+                bookChunk.clear();
+            }
+        }
+        System.out.printf("Seeded %d books of %d authors.%n", books, authors);
+    }
+
+    private static void report(Map<Endpoint, EndpointStats> stats, long durationSeconds, File out)
+            throws FileNotFoundException {
+        if (!out.isDirectory() && !out.mkdirs()) {
+            throw new IllegalStateException("Can not create " + out + ".");
+        }
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            Endpoint endpoint = entry.getKey();
+            EndpointStats endpointStats = entry.getValue();
+            Histogram latencies = endpointStats.takeLatencies();
+            Histogram serviceTimes = endpointStats.takeServiceTimes();
+            long requests = latencies.getTotalCount();
+            long errors = requests - endpointStats.getSuccesses();
+            System.out.printf("%s: %d requests, %.1f successes/s, %d errors (%.2f%%) %s%n", endpoint.getTemplate(),
+                    requests, (double) endpointStats.getSuccesses() / durationSeconds, errors,
+                    requests == 0 ? 0.0 : 100.0 * errors / requests, endpointStats.getErrors());
+            System.out.printf("  latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                    millis(latencies, 50), millis(latencies, 90), millis(latencies, 99), millis(latencies, 99.9),
+                    latencies.getMaxValue() / NANOS_PER_MILLI);
+            System.out.printf("  uncorrected ms: p50 %.2f, p99 %.2f, max %.2f%n", millis(serviceTimes, 50),
+                    millis(serviceTimes, 99), serviceTimes.getMaxValue() / NANOS_PER_MILLI);
+            File file = new File(out, endpoint.getKey() + ".hgrm");
+            try (PrintStream printStream = new PrintStream(file)) {
+                latencies.outputPercentileDistribution(printStream, NANOS_PER_MILLI);
+            }
+        }
+        System.out.println("Latency histograms are in " + out + ".");
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+}
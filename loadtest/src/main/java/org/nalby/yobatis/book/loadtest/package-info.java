@@ -0,0 +1,4 @@
+/**
+ * An open-model HTTP load test of the webapp, served by an embedded Jetty on an in-memory database.
+ */
+package org.nalby.yobatis.book.loadtest;
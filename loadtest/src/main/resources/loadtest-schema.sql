@@ -0,0 +1,3 @@
+-- The tables of book_store.sql, in a form H2 accepts.
+CREATE TABLE IF NOT EXISTS author (id bigint NOT NULL AUTO_INCREMENT, name char(100), birthday date, PRIMARY KEY (id));
+CREATE TABLE IF NOT EXISTS book (id bigint NOT NULL AUTO_INCREMENT, name char(100), author bigint, PRIMARY KEY (id));
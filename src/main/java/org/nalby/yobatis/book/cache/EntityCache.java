@@ -0,0 +1,70 @@
+package org.nalby.yobatis.book.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * A size-bounded cache of entities by primary key, evicted by W-TinyLFU and expired a fixed
+ * time after being loaded. Concurrent loads of the same key wait for a single load, loads of
+ * different keys do not block each other.
+ */
+public class EntityCache<K, V> {
+
+    private final Cache<K, V> cache;
+
+    /**
+     * @param maximumSize the max number of entities to hold.
+     * @param expireAfterWriteSeconds seconds an entity stays in the cache after it's loaded.
+     */
+    public EntityCache(long maximumSize, long expireAfterWriteSeconds) {
+        if (maximumSize <= 0 || expireAfterWriteSeconds <= 0) {
+            throw new IllegalArgumentException("maximumSize and expireAfterWriteSeconds must be positive.");
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get the entity of the key, loading it if absent. A null loaded is not cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return cache.get(key, loader);
+    }
+
+    public V getIfPresent(K key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(K key, V value) {
+        cache.put(key, value);
+    }
+
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll(Iterable<? extends K> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return hit, miss, load and eviction counters since the cache was created.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
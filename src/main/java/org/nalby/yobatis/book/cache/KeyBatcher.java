@@ -0,0 +1,111 @@
+package org.nalby.yobatis.book.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Merges single-key loads arriving within a short window into one batch load, in the style of a
+ * DataLoader. The first key of a window starts the window; the batch is loaded when the window
+ * ends or when it reaches the max batch size, whichever comes first.
+ */
+public class KeyBatcher<K, V> {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "key-batcher-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long windowMicros;
+
+    private final int maxBatchSize;
+
+    private final Function<List<K>, Map<K, V>> batchLoader;
+
+    private final Executor executor;
+
+    private Batch pending;
+
+    /**
+     * @param windowMicros how long a batch collects keys.
+     * @param maxBatchSize a batch is loaded right away once it has this many keys.
+     * @param batchLoader loads the values of a batch of keys, absent keys are loaded as null.
+     * @param executor runs the batch loads when a window ends.
+     */
+    public KeyBatcher(long windowMicros, int maxBatchSize, Function<List<K>, Map<K, V>> batchLoader, Executor executor) {
+        if (windowMicros <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("windowMicros and maxBatchSize must be positive.");
+        }
+        this.windowMicros = windowMicros;
+        this.maxBatchSize = maxBatchSize;
+        this.batchLoader = batchLoader;
+        this.executor = executor;
+    }
+
+    /**
+     * Load the value of the key as part of the current batch, waiting for the batch to complete.
+     * Callers of the same key in a batch share the value.
+     */
+    public V load(K key) {
+        CompletableFuture<V> future;
+        Batch full = null;
+        synchronized (this) {
+            if (pending == null) {
+                Batch batch = new Batch();
+                pending = batch;
+                TIMER.schedule(() -> executor.execute(() -> flush(batch)), windowMicros, TimeUnit.MICROSECONDS);
+            }
+            future = pending.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (pending.futures.size() >= maxBatchSize) {
+                full = pending;
+                pending = null;
+            }
+        }
+        if (full != null) {
+            flush(full);
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            // A batch that got full is loaded before its window ends.
+            if (batch.dispatched) {
+                return;
+            }
+            batch.dispatched = true;
+            if (pending == batch) {
+                pending = null;
+            }
+        }
+        try {
+            Map<K, V> values = batchLoader.apply(new ArrayList<>(batch.futures.keySet()));
+            for (Map.Entry<K, CompletableFuture<V>> entry : batch.futures.entrySet()) {
+                entry.getValue().complete(values.get(entry.getKey()));
+            }
+        } catch (RuntimeException | Error e) {
+            for (CompletableFuture<V> future : batch.futures.values()) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private class Batch {
+        private final Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+
+        private boolean dispatched;
+    }
+}
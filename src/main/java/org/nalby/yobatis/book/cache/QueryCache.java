@@ -0,0 +1,131 @@
+package org.nalby.yobatis.book.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * A cache of the results of criteria queries on one table, bounded by an estimate of the memory
+ * the results take and evicted by W-TinyLFU. Results larger than {@code maxRows} are not cached.
+ * <p>Entries are stamped with the version of the table when their query started. A write to the
+ * table bumps the version, which makes all entries stale at once without walking them; stale
+ * entries are dropped when read, or evicted in time. A result read while a write was under way is
+ * not cached, as it may hold the rows from before the write.
+ */
+public class QueryCache {
+
+    /*
+     * The estimated bytes of a cached row, of an entry besides its rows, and of a value of a key.
+     */
+    private static final int ROW_BYTES = 128;
+
+    private static final int ENTRY_BYTES = 64;
+
+    private static final int KEY_VALUE_BYTES = 24;
+
+    private final Cache<List<Object>, Entry> cache;
+
+    private final int maxRows;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong staleReads = new AtomicLong();
+
+    /**
+     * @param maximumWeightBytes the max estimated bytes of all entries.
+     * @param maxRows the max number of rows of a result to cache.
+     * @param expireAfterWriteSeconds seconds an entry stays in the cache after it's put.
+     */
+    public QueryCache(long maximumWeightBytes, int maxRows, long expireAfterWriteSeconds) {
+        if (maximumWeightBytes <= 0 || maxRows <= 0 || expireAfterWriteSeconds <= 0) {
+            throw new IllegalArgumentException("maximumWeightBytes, maxRows and expireAfterWriteSeconds must be positive.");
+        }
+        this.maxRows = maxRows;
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeightBytes)
+                .<List<Object>, Entry>weigher((key, entry) -> weigh(key, entry))
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    private static int weigh(List<Object> key, Entry entry) {
+        int bytes = ENTRY_BYTES + entry.rows * ROW_BYTES;
+        for (Object value : key) {
+            bytes += value instanceof String ? ((String) value).length() * 2 : KEY_VALUE_BYTES;
+            if (value instanceof Collection) {
+                bytes += ((Collection<?>) value).size() * KEY_VALUE_BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the result of the query from the cache, or run the query and cache its result. The
+     * result is shared with other callers, it must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(List<Object> key, Supplier<R> query) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            if (entry.version == version.get()) {
+                return (R) entry.value;
+            }
+            staleReads.incrementAndGet();
+            cache.asMap().remove(key, entry);
+        }
+        long started = version.get();
+        R value = query.get();
+        int rows = value instanceof Collection ? ((Collection<?>) value).size() : 1;
+        // The table was written while the query ran.
+        if (rows <= maxRows && started == version.get()) {
+            cache.put(key, new Entry(value, rows, started));
+        }
+        return value;
+    }
+
+    /**
+     * Make all entries stale.
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return hit, miss and eviction counters since the cache was created; a read of a stale entry
+     * counts as a hit here, see {@link #staleReads()}.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the number of reads that found a stale entry.
+     */
+    public long staleReads() {
+        return staleReads.get();
+    }
+
+    private static final class Entry {
+        private final Object value;
+
+        private final int rows;
+
+        private final long version;
+
+        private Entry(Object value, int rows, long version) {
+            this.value = value;
+            this.rows = rows;
+            this.version = version;
+        }
+    }
+}
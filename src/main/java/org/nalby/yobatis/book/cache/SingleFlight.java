@@ -0,0 +1,53 @@
+package org.nalby.yobatis.book.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the load, callers arriving while
+ * it is in flight wait for it and share its result. Nothing is kept once the load completes.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param key identifies the load, must be immutable while the load is in flight.
+     * @param loader runs the load.
+     * @param share applied to the result handed to waiting callers, e.g. to give each one its own copy.
+     * @return the result of the load.
+     */
+    public V execute(K key, Supplier<? extends V> loader, UnaryOperator<V> share) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            try {
+                V value = running.join();
+                return value == null ? null : share.apply(value);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return the number of loads in flight.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
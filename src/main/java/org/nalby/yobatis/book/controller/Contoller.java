@@ -1,37 +1,127 @@
 package org.nalby.yobatis.book.controller;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.response.HandOffOutputStream;
+import org.nalby.yobatis.book.response.JsonWriters;
 import org.nalby.yobatis.book.response.Response;
+import org.nalby.yobatis.book.response.StreamingJsonResponse;
 import org.nalby.yobatis.book.service.BookService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+/**
+ * The endpoints are served asynchronously: the container thread is released as soon as the
+ * database work is handed to the async dao executor, and the response is written when it completes.
+ */
 @RestController
 @RequestMapping("/book")
 public class Contoller {
-	
+
 	private final static Logger logger = LoggerFactory.getLogger(Contoller.class);
-	
+
+	private final static long TIMEOUT_MILLIS = 5000;
+
+	private final static long STREAM_TIMEOUT_MILLIS = 60000;
+
+	private final static long MAX_PENDING_BYTES = 8 << 20;
+
 	@Autowired
 	private BookService bookService;
 
+	@Autowired
+	@Qualifier("responseWriterExecutor")
+	private Executor responseWriterExecutor;
+
 	@RequestMapping(value = "/{name}", method = RequestMethod.GET, produces = "application/json")
-	public Response<Book> getByName(@PathVariable(value = "name") String name) {
+	public DeferredResult<Response<Book>> getByName(@PathVariable(value = "name") String name) {
 		logger.info("Getting book by name:{}.", name);
-		return Response.ok(bookService.getByName(name));
+		return defer(bookService.getByNameAsync(name));
 	}
-	
+
+	/**
+	 * Books are written to the response as they are read from the database, the body is the
+	 * same as serializing the whole {@code Response<List<Book>>}.
+	 */
 	@RequestMapping(value = "/{bookName}/{authorName}", method = RequestMethod.GET, produces = "application/json")
-	public Response<List<Book>> getByNameOrAuthor(
+	public DeferredResult<Void> getByNameOrAuthor(
 			@PathVariable(value = "bookName") String bookName,
-			@PathVariable(value = "authorName") long autoherId) {
-		return Response.ok(bookService.nameEqualOrAuthorIs(bookName, autoherId));
+			@PathVariable(value = "authorName") long autoherId,
+			HttpServletResponse response) throws IOException {
+		DeferredResult<Void> result = new DeferredResult<>(STREAM_TIMEOUT_MILLIS);
+		response.setContentType("application/json;charset=UTF-8");
+		// The rows are written to the client by the response writers, the query thread holding a
+		// connection never waits for a slow client.
+		HandOffOutputStream output = new HandOffOutputStream(response.getOutputStream(), responseWriterExecutor,
+				MAX_PENDING_BYTES);
+		StreamingJsonResponse<Book> body = new StreamingJsonResponse<>(output, JsonWriters.BOOK);
+		// Once the request is over nothing more is written, and the query stops at its next row.
+		result.onTimeout(() -> {
+			if (output.cancel()) {
+				result.setErrorResult(Response.unavailable("timeout"));
+			} else {
+				result.setResult(null);
+			}
+		});
+		result.onCompletion(output::cancel);
+		CompletableFuture<Long> future = bookService.streamNameEqualOrAuthorIs(bookName, autoherId,
+				book -> !output.isCancelled() && body.test(book));
+		future.whenComplete((count, error) -> {
+			if (output.isCancelled()) {
+				return;
+			}
+			if (error == null) {
+				body.finish();
+			} else if (!body.isStarted()) {
+				complete(result, error);
+				return;
+			} else {
+				logger.warn("Failed streaming books of {}/{}.", bookName, autoherId, error);
+				output.close();
+			}
+			// A null result adds nothing to the body written above.
+			output.whenWritten().thenRun(() -> result.setResult(null));
+		});
+		return result;
+	}
+
+	/*
+	 * Requests that time out or find the executor full get a 503 response, other failures are
+	 * handled as if the handler had thrown them. Work that times out still runs to completion,
+	 * its result is dropped.
+	 */
+	private <T> DeferredResult<Response<T>> defer(CompletableFuture<T> future) {
+		DeferredResult<Response<T>> result = new DeferredResult<>(TIMEOUT_MILLIS,
+				Response.<T>unavailable("timeout"));
+		future.whenComplete((data, error) -> {
+			if (error == null) {
+				result.setResult(Response.ok(data));
+			} else {
+				complete(result, error);
+			}
+		});
+		return result;
+	}
+
+	/*
+	 * A non-exception error result is written as the response.
+	 */
+	private void complete(DeferredResult<?> result, Throwable error) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		result.setErrorResult(cause instanceof RejectedExecutionException ? Response.unavailable("busy") : cause);
 	}
 }
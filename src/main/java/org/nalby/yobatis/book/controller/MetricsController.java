@@ -0,0 +1,44 @@
+package org.nalby.yobatis.book.controller;
+
+import java.util.List;
+
+import org.nalby.yobatis.book.metrics.SlowQuery;
+import org.nalby.yobatis.book.metrics.SlowQueryLog;
+import org.nalby.yobatis.book.metrics.StatementMetrics;
+import org.nalby.yobatis.book.metrics.StatementStats;
+import org.nalby.yobatis.book.response.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves the metrics of the mapper statements, recorded since start or the last reset, and the
+ * latest slow queries.
+ */
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+	@Autowired
+	private StatementMetrics statementMetrics;
+
+	@Autowired
+	private SlowQueryLog slowQueryLog;
+
+	@RequestMapping(value = "/statements", method = RequestMethod.GET, produces = "application/json")
+	public Response<List<StatementStats>> getStatements() {
+		return Response.ok(statementMetrics.snapshot());
+	}
+
+	@RequestMapping(value = "/statements", method = RequestMethod.DELETE, produces = "application/json")
+	public Response<Void> resetStatements() {
+		statementMetrics.reset();
+		return Response.ok(null);
+	}
+
+	@RequestMapping(value = "/slow-queries", method = RequestMethod.GET, produces = "application/json")
+	public Response<List<SlowQuery>> getSlowQueries() {
+		return Response.ok(slowQueryLog.snapshot());
+	}
+}
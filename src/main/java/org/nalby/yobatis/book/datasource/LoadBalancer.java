@@ -0,0 +1,14 @@
+package org.nalby.yobatis.book.datasource;
+
+import java.util.List;
+
+/**
+ * Picks the replica a read gets its connection from.
+ */
+public interface LoadBalancer {
+    /**
+     * @param replicas the names of the replicas within the lag tolerance, never empty.
+     * @return one of {@code replicas}.
+     */
+    String choose(List<String> replicas);
+}
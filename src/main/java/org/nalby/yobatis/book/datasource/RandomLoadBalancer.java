@@ -0,0 +1,15 @@
+package org.nalby.yobatis.book.datasource;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks a replica at random, which spreads the load without shared state between threads.
+ */
+public class RandomLoadBalancer implements LoadBalancer {
+
+    @Override
+    public String choose(List<String> replicas) {
+        return replicas.get(ThreadLocalRandom.current().nextInt(replicas.size()));
+    }
+}
@@ -0,0 +1,163 @@
+package org.nalby.yobatis.book.datasource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes connections of read-only transactions, and of reads outside transactions, to replicas,
+ * all others to the primary. Reads outside transactions are told apart by the {@link RoutingHint}
+ * set for each statement, see {@link org.nalby.yobatis.book.plugin.ReadWriteRoutingInterceptor}.
+ * <p>Transactions take their connection when they begin, before their read-only flag is known, so
+ * this data source must be wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * which defers taking the connection to the first statement. A transaction keeps the connection
+ * it takes: a read-only transaction starting with a 'for update' read runs on the primary, but one
+ * that locks rows after reading locks them on the replica.
+ * <p>Replicas lagging behind more than {@code maxLagMillis} are left out, and reads go to the
+ * primary if no replica is left. Since a write outside transactions may not have reached a replica
+ * when the next read runs, reads that must see it should run in a transaction, or in
+ * {@link RoutingHint#onPrimary(java.util.function.Supplier)} as the reads filling the dao caches do.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final String PRIMARY = "primary";
+
+    public static final long DEFAULT_MAX_LAG_MILLIS = 5000;
+
+    public static final long DEFAULT_LAG_CHECK_MILLIS = 1000;
+
+    private DataSource primary;
+
+    private Map<String, DataSource> replicas = new LinkedHashMap<>();
+
+    private List<String> replicaNames = new ArrayList<>();
+
+    private LoadBalancer loadBalancer = new RoundRobinLoadBalancer();
+
+    private long maxLagMillis = DEFAULT_MAX_LAG_MILLIS;
+
+    private long lagCheckMillis = DEFAULT_LAG_CHECK_MILLIS;
+
+    private String lagQuery = ReplicaLagMonitor.DEFAULT_LAG_QUERY;
+
+    private String lagColumn = ReplicaLagMonitor.DEFAULT_LAG_COLUMN;
+
+    private ReplicaLagMonitor lagMonitor;
+
+    public void setPrimary(DataSource primary) {
+        this.primary = primary;
+    }
+
+    /**
+     * @param replicas the replicas by name, may be empty.
+     */
+    public void setReplicas(Map<String, DataSource> replicas) {
+        if (replicas == null || replicas.containsKey(PRIMARY)) {
+            throw new IllegalArgumentException("replicas must not be null or contain " + PRIMARY + ".");
+        }
+        this.replicas = new LinkedHashMap<>(replicas);
+    }
+
+    public void setLoadBalancer(LoadBalancer loadBalancer) {
+        if (loadBalancer == null) {
+            throw new IllegalArgumentException("loadBalancer must not be null.");
+        }
+        this.loadBalancer = loadBalancer;
+    }
+
+    /**
+     * Set the replication lag beyond which a replica gets no reads, 0 or less to read from replicas
+     * regardless of their lag without measuring it.
+     */
+    public void setMaxLagMillis(long maxLagMillis) {
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    /**
+     * Set how often the lag of the replicas is measured.
+     */
+    public void setLagCheckMillis(long lagCheckMillis) {
+        if (lagCheckMillis <= 0) {
+            throw new IllegalArgumentException("lagCheckMillis must be positive.");
+        }
+        this.lagCheckMillis = lagCheckMillis;
+    }
+
+    /**
+     * Set the query that returns the lag of a replica, 'show slave status' by default.
+     */
+    public void setLagQuery(String lagQuery) {
+        if (lagQuery == null) {
+            throw new IllegalArgumentException("lagQuery must not be null.");
+        }
+        this.lagQuery = lagQuery;
+    }
+
+    /**
+     * Set the column of the first row of the lag query that holds the lag in seconds.
+     */
+    public void setLagColumn(String lagColumn) {
+        if (lagColumn == null) {
+            throw new IllegalArgumentException("lagColumn must not be null.");
+        }
+        this.lagColumn = lagColumn;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (primary == null) {
+            throw new IllegalArgumentException("primary must not be null.");
+        }
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        super.afterPropertiesSet();
+        replicaNames = new ArrayList<>(replicas.keySet());
+        if (maxLagMillis > 0 && !replicas.isEmpty()) {
+            lagMonitor = new ReplicaLagMonitor(replicas, lagQuery, lagColumn);
+            lagMonitor.start(lagCheckMillis);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (lagMonitor != null) {
+            lagMonitor.stop();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaNames.isEmpty() || !readsFromReplica()) {
+            return PRIMARY;
+        }
+        List<String> candidates = replicaNames;
+        if (lagMonitor != null) {
+            candidates = new ArrayList<>(replicaNames.size());
+            for (String name : replicaNames) {
+                if (lagMonitor.getLagMillis(name) <= maxLagMillis) {
+                    candidates.add(name);
+                }
+            }
+        }
+        return candidates.isEmpty() ? PRIMARY : loadBalancer.choose(candidates);
+    }
+
+    private boolean readsFromReplica() {
+        if (RoutingHint.isOnPrimary()) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !RoutingHint.isWrite();
+        }
+        return RoutingHint.isRead();
+    }
+}
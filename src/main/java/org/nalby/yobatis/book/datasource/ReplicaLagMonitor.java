@@ -0,0 +1,112 @@
+package org.nalby.yobatis.book.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the replication lag of replicas periodically, by running a query on each of them that
+ * returns the lag in seconds. A replica that can not be reached, or whose replication has stopped,
+ * i.e. the lag is null, is considered infinitely behind. A replica that returns no row is not
+ * replicating and is considered up to date.
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    public static final String DEFAULT_LAG_QUERY = "show slave status";
+
+    public static final String DEFAULT_LAG_COLUMN = "Seconds_Behind_Master";
+
+    private final Map<String, DataSource> replicas;
+
+    private final String lagQuery;
+
+    private final String lagColumn;
+
+    private final Map<String, Long> lagMillis = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService timer;
+
+    /**
+     * @param replicas the replicas by name.
+     * @param lagQuery the query to run on a replica.
+     * @param lagColumn the column of the first row that holds the lag in seconds.
+     */
+    public ReplicaLagMonitor(Map<String, DataSource> replicas, String lagQuery, String lagColumn) {
+        if (replicas == null || lagQuery == null || lagColumn == null) {
+            throw new IllegalArgumentException("replicas, lagQuery and lagColumn must not be null.");
+        }
+        this.replicas = replicas;
+        this.lagQuery = lagQuery;
+        this.lagColumn = lagColumn;
+    }
+
+    /**
+     * Measure all replicas now, then every {@code periodMillis} in the background.
+     */
+    public synchronized void start(long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("periodMillis must be positive.");
+        }
+        if (timer != null) {
+            return;
+        }
+        measureAll();
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::measureAll, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /**
+     * @return the last measured lag of the replica, Long.MAX_VALUE if it is unknown.
+     */
+    public long getLagMillis(String replica) {
+        Long lag = lagMillis.get(replica);
+        return lag == null ? Long.MAX_VALUE : lag;
+    }
+
+    void measureAll() {
+        for (Map.Entry<String, DataSource> entry : replicas.entrySet()) {
+            long lag = measure(entry.getKey(), entry.getValue());
+            Long previous = lagMillis.put(entry.getKey(), lag);
+            if (lag == Long.MAX_VALUE && (previous == null || previous != Long.MAX_VALUE)) {
+                logger.warn("Replica {} is unreachable or not replicating.", entry.getKey());
+            }
+        }
+    }
+
+    private long measure(String name, DataSource replica) {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                return 0;
+            }
+            long seconds = resultSet.getLong(lagColumn);
+            return resultSet.wasNull() ? Long.MAX_VALUE : TimeUnit.SECONDS.toMillis(seconds);
+        } catch (SQLException | RuntimeException e) {
+            logger.debug("Failed to measure the lag of replica {}.", name, e);
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.nalby.yobatis.book.datasource;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out the replicas in turn.
+ */
+public class RoundRobinLoadBalancer implements LoadBalancer {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public String choose(List<String> replicas) {
+        return replicas.get((next.getAndIncrement() & Integer.MAX_VALUE) % replicas.size());
+    }
+}
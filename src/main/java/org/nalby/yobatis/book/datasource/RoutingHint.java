@@ -0,0 +1,71 @@
+package org.nalby.yobatis.book.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Tells {@link ReadWriteRoutingDataSource} whether the statement about to take a connection only
+ * reads. Outside transactions, statements without the hint go to the primary. A read-only
+ * transaction goes to the primary if its first statement is hinted not to only read, e.g. locks rows.
+ * <p>Reads that must see every committed write, e.g. those filling caches, run {@link #onPrimary(Supplier)}.
+ */
+public final class RoutingHint {
+
+    private static final ThreadLocal<Boolean> READ = new ThreadLocal<>();
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private RoutingHint() {
+    }
+
+    /**
+     * Set the hint of the current thread.
+     * @param read true if the statement only reads and may run on a replica.
+     * @return the previous hint, to be passed to {@link #restore(Boolean)}.
+     */
+    public static Boolean set(boolean read) {
+        Boolean previous = READ.get();
+        READ.set(read);
+        return previous;
+    }
+
+    public static void restore(Boolean previous) {
+        if (previous == null) {
+            READ.remove();
+        } else {
+            READ.set(previous);
+        }
+    }
+
+    static boolean isRead() {
+        return Boolean.TRUE.equals(READ.get());
+    }
+
+    static boolean isWrite() {
+        return Boolean.FALSE.equals(READ.get());
+    }
+
+    /**
+     * Run the work with its reads on the primary, unless a transaction already took a replica connection.
+     * @return the result of the work.
+     */
+    public static <R> R onPrimary(Supplier<R> work) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY.remove();
+            } else {
+                PRIMARY.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return true if the current thread runs in {@link #onPrimary(Supplier)}.
+     */
+    public static boolean isOnPrimary() {
+        return PRIMARY.get() != null;
+    }
+}
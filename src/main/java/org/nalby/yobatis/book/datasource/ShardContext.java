@@ -0,0 +1,69 @@
+package org.nalby.yobatis.book.datasource;
+
+import java.util.function.Supplier;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The shard the statements of the current thread run on, see {@link ShardRoutingDataSource}.
+ * <p>A transaction holds one connection, so it can only run on one shard: the shard its connection
+ * is taken from. Running work on another shard within it fails.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    /*
+     * The key of the shard of the current transaction among the transaction resources.
+     */
+    private static final Object TRANSACTION_SHARD = new Object();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Run the work with its statements routed to the shard.
+     * @throws IllegalStateException if the current transaction runs on another shard.
+     */
+    public static <R> R on(int shard, Supplier<R> work) {
+        Object bound = TransactionSynchronizationManager.getResource(TRANSACTION_SHARD);
+        if (bound != null && (Integer) bound != shard) {
+            throw new IllegalStateException("The transaction runs on shard " + bound + ", can not run on shard " + shard + ".");
+        }
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the shard of the current thread, null if none is set.
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    /*
+     * Called when a connection is taken from the shard, remembers the shard if in a transaction.
+     */
+    static void taken(int shard) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(TRANSACTION_SHARD)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(TRANSACTION_SHARD, shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_SHARD);
+            }
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package org.nalby.yobatis.book.datasource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes connections to the shard set by {@link ShardContext}, or to the first shard if none is
+ * set, which therefore holds the tables that are not sharded. Like {@link ReadWriteRoutingDataSource},
+ * it must be wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * for transactions to take their connection from the shard of their first statement.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private List<DataSource> shards = new ArrayList<>();
+
+    /**
+     * @param shards the shards, the index of a shard in the list is its number.
+     */
+    public void setShards(List<DataSource> shards) {
+        if (shards == null || shards.isEmpty() || shards.contains(null)) {
+            throw new IllegalArgumentException("shards must not be null, empty or contain null.");
+        }
+        this.shards = new ArrayList<>(shards);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("shards must not be empty.");
+        }
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        super.afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.current();
+        int key = shard == null ? 0 : shard;
+        if (key < 0 || key >= shards.size()) {
+            throw new IllegalStateException("No such a shard: " + key + ".");
+        }
+        ShardContext.taken(key);
+        return key;
+    }
+}
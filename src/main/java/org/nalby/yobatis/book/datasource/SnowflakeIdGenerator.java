@@ -0,0 +1,105 @@
+package org.nalby.yobatis.book.datasource;
+
+/**
+ * Generates ids unique across shards and application instances without asking the database, each
+ * id carries the shard of its row. An id is laid out as, from the highest bit:
+ * <pre>
+ * 0 | 41 bits of milliseconds since 2020-01-01 | 8 bits of shard | 6 bits of worker | 8 bits of sequence
+ * </pre>
+ * which allows 256 shards, 64 application instances, each of which generates up to 256 ids per
+ * millisecond, until the year 2089. Ids increase with time on each instance.
+ */
+public class SnowflakeIdGenerator {
+
+    /**
+     * 2020-01-01T00:00:00Z.
+     */
+    public static final long EPOCH_MILLIS = 1577836800000L;
+
+    private static final int SEQUENCE_BITS = 8;
+
+    private static final int WORKER_BITS = 6;
+
+    private static final int SHARD_BITS = 8;
+
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    public static final int MAX_WORKERS = 1 << WORKER_BITS;
+
+    private static final int SHARD_SHIFT = SEQUENCE_BITS + WORKER_BITS;
+
+    private static final int TIME_SHIFT = SHARD_SHIFT + SHARD_BITS;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /*
+     * How far the clock may go backwards before generating fails instead of waiting.
+     */
+    private static final long MAX_BACKWARDS_MILLIS = 1000;
+
+    private final long worker;
+
+    private long lastMillis = -1;
+
+    private long sequence;
+
+    /**
+     * @param worker the number of this application instance, unique among the instances that
+     * insert into the same tables.
+     */
+    public SnowflakeIdGenerator(int worker) {
+        if (worker < 0 || worker >= MAX_WORKERS) {
+            throw new IllegalArgumentException("worker must be in [0, " + MAX_WORKERS + ").");
+        }
+        this.worker = worker;
+    }
+
+    /**
+     * @param shard the shard of the row the id is for.
+     * @return a new id.
+     * @throws IllegalStateException if the clock went backwards by more than a second.
+     */
+    public long nextId(int shard) {
+        if (shard < 0 || shard >= MAX_SHARDS) {
+            throw new IllegalArgumentException("shard must be in [0, " + MAX_SHARDS + ").");
+        }
+        long millis;
+        long seq;
+        synchronized (this) {
+            millis = waitUntil(lastMillis);
+            if (millis == lastMillis) {
+                sequence = (sequence + 1) & SEQUENCE_MASK;
+                if (sequence == 0) {
+                    millis = waitUntil(lastMillis + 1);
+                }
+            } else {
+                sequence = 0;
+            }
+            lastMillis = millis;
+            seq = sequence;
+        }
+        return (millis - EPOCH_MILLIS) << TIME_SHIFT | (long) shard << SHARD_SHIFT | worker << SEQUENCE_BITS | seq;
+    }
+
+    /*
+     * The current time once it reaches {@code millis}.
+     */
+    private static long waitUntil(long millis) {
+        long now = System.currentTimeMillis();
+        if (millis - now > MAX_BACKWARDS_MILLIS) {
+            throw new IllegalStateException("The clock went backwards by " + (millis - now) + "ms.");
+        }
+        while (now < millis) {
+            Thread.yield();
+            now = System.currentTimeMillis();
+        }
+        return now;
+    }
+
+    /**
+     * @return the shard carried by an id this class generated.
+     */
+    public static int shardOf(long id) {
+        return (int) (id >>> SHARD_SHIFT) & (MAX_SHARDS - 1);
+    }
+}
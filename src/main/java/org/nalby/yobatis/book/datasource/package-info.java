@@ -0,0 +1,4 @@
+/**
+ * Routing of connections between the primary database and its replicas.
+ */
+package org.nalby.yobatis.book.datasource;
@@ -0,0 +1,94 @@
+package org.nalby.yobatis.book.mapper;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+
+/**
+ * The non-blocking counterpart of {@link BaseDao}: each call runs the {@code BaseDao} method on a
+ * bounded executor and returns at once. Failures, including invalid arguments and a full executor,
+ * complete the future exceptionally.
+ * <p>Spring transactions are bound to threads. A call made within a transaction therefore runs in
+ * the calling thread, as part of that transaction, and returns a completed future. Calls composed
+ * outside a transaction run in separate transactions. To run several calls in one transaction, use
+ * {@link #transactional(Function)}.
+ */
+public interface AsyncBaseDao<T extends B, B, PK> {
+    /**
+     * @see BaseDao#selectOne(Object)
+     */
+    CompletableFuture<T> selectOne(PK pk);
+
+    /**
+     * @see BaseDao#selectMany(Collection)
+     */
+    CompletableFuture<Map<PK, T>> selectMany(Collection<PK> pks);
+
+    /**
+     * @see BaseDao#selectOne(BaseCriteria)
+     */
+    CompletableFuture<T> selectOne(BaseCriteria criteria);
+
+    /**
+     * @see BaseDao#selectList(BaseCriteria)
+     */
+    CompletableFuture<List<T>> selectList(BaseCriteria criteria);
+
+    /**
+     * The consumer is called on the executor thread.
+     * @see BaseDao#selectStream(BaseCriteria, Predicate)
+     */
+    CompletableFuture<Long> selectStream(BaseCriteria criteria, Predicate<? super T> consumer);
+
+    /**
+     * @see BaseDao#countAll()
+     */
+    CompletableFuture<Long> countAll();
+
+    /**
+     * @see BaseDao#count(BaseCriteria)
+     */
+    CompletableFuture<Long> count(BaseCriteria criteria);
+
+    /**
+     * @see BaseDao#insert(Object)
+     */
+    CompletableFuture<Integer> insert(B record);
+
+    /**
+     * @see BaseDao#insertAll(Object)
+     */
+    CompletableFuture<Integer> insertAll(B record);
+
+    /**
+     * @see BaseDao#update(Object)
+     */
+    CompletableFuture<Integer> update(B record);
+
+    /**
+     * @see BaseDao#update(Object, BaseCriteria)
+     */
+    CompletableFuture<Integer> update(B record, BaseCriteria criteria);
+
+    /**
+     * @see BaseDao#delete(Object)
+     */
+    CompletableFuture<Integer> delete(PK pk);
+
+    /**
+     * @see BaseDao#delete(BaseCriteria)
+     */
+    CompletableFuture<Integer> delete(BaseCriteria criteria);
+
+    /**
+     * Run {@code work} against the blocking dao in one read-write transaction on the executor, which
+     * rolls back if the work throws. Within a transaction, the work joins it in the calling thread.
+     * @param work the calls to make, must not block on futures of this dao.
+     * @return the result of the work.
+     */
+    <R> CompletableFuture<R> transactional(Function<? super BaseDao<T, B, PK>, ? extends R> work);
+}
@@ -1,10 +1,13 @@
 package org.nalby.yobatis.book.mapper;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 import org.nalby.yobatis.book.model.criteria.BaseCriteria;
 
 /*
- * Do NOT modify, it will be overwrote every time yobatis runs.
+ * Generated by yobatis once, maintained by hand since: do not let yobatis overwrite it.
  */
 public interface BaseDao<T extends B, B, PK> {
     /**
@@ -32,6 +35,52 @@ public interface BaseDao<T extends B, B, PK> {
      */
     int insert(B record);
 
+    /**
+     * Insert all fields of the records into table through JDBC batching, the records
+     * are sent in chunks of the configured batch size. If the table has an auto_increment pk,
+     * the primary key field of each record will hold the generated key after insertion.
+     * @param records the records to insert.
+     * @return the number of inserted records.
+     * @throws IllegalArgumentException if records is null or contains null.
+     */
+    int insertBatch(List<? extends B> records);
+
+    /**
+     * Insert all fields of the records into table, using one multi-row statement per chunk.
+     * @param records the records to insert.
+     * @return the number of inserted records.
+     * @throws IllegalArgumentException if records is null or contains null.
+     */
+    int insertAllBatch(List<? extends B> records);
+
+    /**
+     * Insert all fields of the records into table, using one multi-row statement per chunk,
+     * records that can not be inserted are skipped.
+     * @param records the records to insert.
+     * @return the number of inserted records.
+     * @throws IllegalArgumentException if records is null or contains null.
+     */
+    int insertAllIgnoreBatch(List<? extends B> records);
+
+    /**
+     * Insert all fields of the record into table, or if a row with the same primary or unique key
+     * exists, update the configured upsert columns of that row instead, in one statement.
+     * The primary key field is not filled in with the generated key.
+     * @param record the record to insert or update.
+     * @return 1 if inserted, 2 if updated; if the row was not changed, 0 or 1 depending on whether
+     * the connection reports affected or found rows.
+     * @throws IllegalArgumentException if record is null.
+     */
+    int upsert(B record);
+
+    /**
+     * Upsert the records as {@link #upsert(Object)} does, using one multi-row statement per chunk.
+     * @param records the records to insert or update.
+     * @return the sum of the counts of {@link #upsert(Object)}.
+     * @throws IllegalArgumentException if records is null or contains null.
+     */
+    int upsertBatch(List<? extends B> records);
+
     /**
      * Select a record by primary key.
      * @param pk the primary key.
@@ -40,6 +89,16 @@ public interface BaseDao<T extends B, B, PK> {
      */
     T selectOne(PK pk);
 
+    /**
+     * Select records by primary keys. Duplicated keys are queried once, cached records are served
+     * from the cache, and the rest are selected by 'in' lists of limited size, in parallel if a dao
+     * executor is configured and the caller is not in a transaction.
+     * @param pks the primary keys.
+     * @return the records found, keyed by primary key in the iteration order of {@code pks}.
+     * @throws IllegalArgumentException if pks is null or contains null.
+     */
+    Map<PK, T> selectMany(Collection<PK> pks);
+
     /**
      * Select a record by criteria, a MybatisSystemException will be thrown if
      * more than one records meet the criteria.
@@ -59,13 +118,41 @@ public interface BaseDao<T extends B, B, PK> {
     List<T> selectList(BaseCriteria criteria);
 
     /**
-     * Count row number of the whole table.
+     * Select records by criteria and pass them to {@code consumer} one by one as they are read
+     * from the database, so memory use does not grow with the number of rows. Returning false from
+     * the consumer stops the scan and cancels the query.
+     * <p>The connection is busy until the scan ends, the consumer must not query the database
+     * within the same transaction.
+     * @param criteria the criteria.
+     * @param consumer receives the records, returns false to stop.
+     * @return the number of records passed to the consumer.
+     * @throws IllegalArgumentException if criteria is null or empty, or consumer is null.
+     */
+    long selectStream(BaseCriteria criteria, Predicate<? super T> consumer);
+
+    /**
+     * Select a page of records by keyset pagination: the page starts right after the last row of the
+     * previous page in the order of the criteria, so the cost does not grow with the page depth the way
+     * 'offset' does. The primary key is appended to the order as the tie-breaker.
+     * <p>The criteria is not modified by this call, so it can be reused for every page; it must not
+     * have an offset.
+     * @param criteria the criteria, may be empty to page through the whole table.
+     * @param pageToken the token of the previous page, null for the first page.
+     * @param pageSize the max number of records of the page.
+     * @return the page.
+     * @throws IllegalArgumentException if criteria is null, pageSize is not positive or the token is malformed.
+     * @throws IllegalStateException if criteria has an offset.
+     */
+    Page<T> selectPage(BaseCriteria criteria, String pageToken, int pageSize);
+
+    /**
+     * Count row number of the whole table, exactly or not depending on the {@link CountMode} of the dao.
      * @return the row number.
      */
     long countAll();
 
     /**
-     * Count row number by criteria.
+     * Count row number by criteria, the result may be served from a short-lived cache.
      * @param criteria the criteria to query rows.
      * @return the number of rows that meet the criteria.
      */
@@ -87,6 +174,27 @@ public interface BaseDao<T extends B, B, PK> {
      */
     int updateAll(B record);
 
+    /**
+     * Update the records by primary key through JDBC batching, null fields are ignored. The records
+     * are sent in chunks of the configured batch size, consecutive records with the same non-null
+     * fields share one statement.
+     * @param records the records that hold new values and primary keys.
+     * @return the update counts, one per record and in the same order, 1 if updated and 0 if no such
+     * a record. The driver may report {@link java.sql.Statement#SUCCESS_NO_INFO} instead, e.g. if
+     * it rewrites batches into multi-statements.
+     * @throws IllegalArgumentException if records is null or contains null.
+     */
+    int[] updateBatch(List<? extends B> records);
+
+    /**
+     * Update the records by primary key through JDBC batching, all fields including null ones will
+     * be updated.
+     * @param records the records that hold new values and primary keys.
+     * @return the update counts, as of {@link #updateBatch(List)}.
+     * @throws IllegalArgumentException if records is null or contains null.
+     */
+    int[] updateAllBatch(List<? extends B> records);
+
     /**
      * Update non-null fields of the {@code record} to corresponding columns of the table.
      * @param record the new values.
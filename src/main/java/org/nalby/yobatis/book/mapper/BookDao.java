@@ -1,10 +1,32 @@
 package org.nalby.yobatis.book.mapper;
 
+import java.util.List;
 import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.BookColumns;
+import org.nalby.yobatis.book.model.BookWithAuthor;
 import org.nalby.yobatis.book.model.base.BaseBook;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
 
 /*
  * It is safe to modify this file.
  */
 public interface BookDao extends BaseDao<Book, BaseBook, Long> {
-}
\ No newline at end of file
+    /**
+     * Select books by criteria along with their authors, in at most two statements whatever the number
+     * of books. The filtering, ordering and limit of the criteria apply to books.
+     * @param criteria the criteria, must not be null or empty.
+     * @param fetchMode how to fetch the authors, must not be null; JOIN falls back to BATCH if books
+     * are sharded, the criteria has a long 'in' list, or the query cache may serve the books.
+     * @return books matched, an empty list if none.
+     */
+    List<BookWithAuthor> selectWithAuthor(BaseCriteria criteria, FetchMode fetchMode);
+
+    /**
+     * Select books by criteria into columns, for scans too large to hold as a list of books. Rows
+     * are streamed as by {@link #selectStream}, only the columns are kept.
+     * @param criteria the criteria, must not be null or empty.
+     * @return books matched, in the order of the criteria.
+     * @throws IllegalArgumentException if criteria is null or empty.
+     */
+    BookColumns selectColumns(BaseCriteria criteria);
+}
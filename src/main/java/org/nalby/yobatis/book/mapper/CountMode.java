@@ -0,0 +1,25 @@
+package org.nalby.yobatis.book.mapper;
+
+/**
+ * How {@link BaseDao#countAll()} counts the rows of the table.
+ */
+public enum CountMode {
+    /**
+     * Run 'select count(*)', exact but scans the whole table on InnoDB.
+     */
+    EXACT,
+
+    /**
+     * Read the row estimate from the table statistics, which costs nothing but can be off by tens of
+     * percents on InnoDB, and may lag behind by the statistics expiry on MySQL 8. Falls back to
+     * {@link #EXACT} if there are no statistics.
+     */
+    APPROXIMATE,
+
+    /**
+     * Count once, then keep a counter adjusted by the inserts and deletes of the dao as they commit.
+     * The counter is reconciled with an exact count periodically in the background, which also picks
+     * up rows written elsewhere. Within a read-write transaction the count is always exact.
+     */
+    CACHED
+}
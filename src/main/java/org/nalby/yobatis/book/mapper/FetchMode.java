@@ -0,0 +1,17 @@
+package org.nalby.yobatis.book.mapper;
+
+/**
+ * How an association is fetched along with the rows selected by criteria.
+ */
+public enum FetchMode {
+    /**
+     * Join the associated table in the same statement, one round trip.
+     */
+    JOIN,
+
+    /**
+     * Select the rows first, then the associated rows of all of them by primary keys in a second
+     * statement, which goes through the entity cache of the associated dao.
+     */
+    BATCH
+}
@@ -0,0 +1,34 @@
+package org.nalby.yobatis.book.mapper;
+
+import java.util.List;
+
+/**
+ * A page of rows selected by {@link BaseDao#selectPage(org.nalby.yobatis.book.model.criteria.BaseCriteria, String, int)},
+ * together with the token to fetch the next page.
+ */
+public class Page<T> {
+
+    private final List<T> rows;
+
+    private final String nextPageToken;
+
+    public Page(List<T> rows, String nextPageToken) {
+        this.rows = rows;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<T> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the opaque token to pass to the next {@code selectPage} call, null if this is the last page.
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+}
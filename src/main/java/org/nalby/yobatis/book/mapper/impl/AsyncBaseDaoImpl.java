@@ -0,0 +1,133 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.nalby.yobatis.book.mapper.AsyncBaseDao;
+import org.nalby.yobatis.book.mapper.BaseDao;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the calls of a {@link BaseDao} on an executor. The executor should be bounded by the size of
+ * the connection pool, and must not be the dao executor of the wrapped dao: a task waiting for tasks
+ * queued behind it on the same pool would never finish.
+ */
+public class AsyncBaseDaoImpl<T extends B, B, PK> implements AsyncBaseDao<T, B, PK> {
+
+    private final BaseDao<T, B, PK> dao;
+
+    private final Executor executor;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public AsyncBaseDaoImpl(BaseDao<T, B, PK> dao, Executor executor, PlatformTransactionManager transactionManager) {
+        if (dao == null || executor == null || transactionManager == null) {
+            throw new IllegalArgumentException("dao, executor and transactionManager must not be null.");
+        }
+        this.dao = dao;
+        this.executor = executor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private <R> CompletableFuture<R> submit(Supplier<R> call) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // The transaction belongs to this thread, leaving it would break its atomicity.
+            CompletableFuture<R> future = new CompletableFuture<>();
+            try {
+                future.complete(call.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<R> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    @Override
+    public CompletableFuture<T> selectOne(PK pk) {
+        return submit(() -> dao.selectOne(pk));
+    }
+
+    @Override
+    public CompletableFuture<Map<PK, T>> selectMany(Collection<PK> pks) {
+        return submit(() -> dao.selectMany(pks));
+    }
+
+    @Override
+    public CompletableFuture<T> selectOne(BaseCriteria criteria) {
+        return submit(() -> dao.selectOne(criteria));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> selectList(BaseCriteria criteria) {
+        return submit(() -> dao.selectList(criteria));
+    }
+
+    @Override
+    public CompletableFuture<Long> selectStream(BaseCriteria criteria, Predicate<? super T> consumer) {
+        return submit(() -> dao.selectStream(criteria, consumer));
+    }
+
+    @Override
+    public CompletableFuture<Long> countAll() {
+        return submit(dao::countAll);
+    }
+
+    @Override
+    public CompletableFuture<Long> count(BaseCriteria criteria) {
+        return submit(() -> dao.count(criteria));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insert(B record) {
+        return submit(() -> dao.insert(record));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertAll(B record) {
+        return submit(() -> dao.insertAll(record));
+    }
+
+    @Override
+    public CompletableFuture<Integer> update(B record) {
+        return submit(() -> dao.update(record));
+    }
+
+    @Override
+    public CompletableFuture<Integer> update(B record, BaseCriteria criteria) {
+        return submit(() -> dao.update(record, criteria));
+    }
+
+    @Override
+    public CompletableFuture<Integer> delete(PK pk) {
+        return submit(() -> dao.delete(pk));
+    }
+
+    @Override
+    public CompletableFuture<Integer> delete(BaseCriteria criteria) {
+        return submit(() -> dao.delete(criteria));
+    }
+
+    @Override
+    public <R> CompletableFuture<R> transactional(Function<? super BaseDao<T, B, PK>, ? extends R> work) {
+        if (work == null) {
+            throw new IllegalArgumentException("work must not be null.");
+        }
+        return submit(() -> transactionTemplate.execute(status -> work.apply(dao)));
+    }
+}
@@ -1,5 +1,10 @@
 package org.nalby.yobatis.book.mapper.impl;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.nalby.yobatis.book.cache.EntityCache;
 import org.nalby.yobatis.book.mapper.AuthorDao;
 import org.nalby.yobatis.book.model.Author;
 import org.nalby.yobatis.book.model.base.BaseAuthor;
@@ -10,9 +15,38 @@ import org.springframework.stereotype.Repository;
  */
 @Repository("authorDao")
 public final class AuthorDaoImpl extends BaseDaoImpl<Author, BaseAuthor, Long> implements AuthorDao {
+    private static final Set<String> UPDATABLE_COLUMNS =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList("name", "birthday")));
 
     @Override
     protected String namespace() {
         return "org.nalby.yobatis.book.mapper.impl.AuthorDaoImpl.";
     }
+
+    @Override
+    protected String tableName() {
+        return "author";
+    }
+
+    @Override
+    protected Set<String> updatableColumns() {
+        return UPDATABLE_COLUMNS;
+    }
+
+    @Override
+    protected Long primaryKey(BaseAuthor record) {
+        return record.getId();
+    }
+
+    @Override
+    protected Author copy(Author entity) {
+        return (Author) entity.copy(new Author());
+    }
+
+    /**
+     * Autowired by name, leave the bean out to disable caching.
+     */
+    public void setAuthorEntityCache(EntityCache<Long, Author> cache) {
+        setEntityCache(cache);
+    }
 }
\ No newline at end of file
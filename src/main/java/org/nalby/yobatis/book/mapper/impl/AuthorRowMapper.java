@@ -0,0 +1,34 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.nalby.yobatis.book.model.Author;
+import org.nalby.yobatis.book.plugin.RowMapper;
+
+/**
+ * Maps the BASE_RESULT_MAP of AuthorMapper.xml, whose statements select its BASE_COLUMN_LIST.
+ */
+public class AuthorRowMapper implements RowMapper<Author> {
+
+    private static final List<String> COLUMNS = Collections.unmodifiableList(Arrays.asList("id", "name", "birthday"));
+
+    @Override
+    public List<String> getColumns() {
+        return COLUMNS;
+    }
+
+    @Override
+    public Author map(ResultSet resultSet) throws SQLException {
+        Author author = new Author();
+        author.setId(RowMapper.getLong(resultSet, 1));
+        author.setName(resultSet.getString(2));
+        // A java.util.Date, as the DATE type handler of MyBatis returns.
+        Date birthday = resultSet.getDate(3);
+        author.setBirthday(birthday == null ? null : new java.util.Date(birthday.getTime()));
+        return author;
+    }
+}
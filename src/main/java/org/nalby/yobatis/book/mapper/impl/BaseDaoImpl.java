@@ -1,29 +1,96 @@
 package org.nalby.yobatis.book.mapper.impl;
 
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import javax.annotation.Resource;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.SqlSessionUtils;
+import org.nalby.yobatis.book.cache.EntityCache;
+import org.nalby.yobatis.book.cache.KeyBatcher;
+import org.nalby.yobatis.book.cache.QueryCache;
+import org.nalby.yobatis.book.cache.SingleFlight;
+import org.nalby.yobatis.book.datasource.RoutingHint;
+import org.nalby.yobatis.book.datasource.ShardContext;
 import org.nalby.yobatis.book.mapper.BaseDao;
+import org.nalby.yobatis.book.mapper.CountMode;
+import org.nalby.yobatis.book.mapper.Page;
 import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria.Criteria;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria.Criterion;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria.SortKey;
+import org.nalby.yobatis.book.plugin.StreamingResultHandler;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /*
- * Do NOT modify, it will be overwrote every time yobatis runs.
+ * Generated by yobatis once, maintained by hand since: do not let yobatis overwrite it.
  */
 public abstract class BaseDaoImpl<T extends B, B, PK> implements BaseDao<T, B, PK> {
     private static final String SELECT_BY_PK = "selectByPk";
 
+    private static final String SELECT_BY_PKS = "selectByPks";
+
     private static final String SELECT_BY_CRITERIA = "selectByCriteria";
 
+    private static final String SELECT_BY_CRITERIA_STREAM = "selectByCriteriaStream";
+
     private static final String COUNT = "count";
 
+    /*
+     * Only a key of the query cache, the query runs selectByCriteria.
+     */
+    private static final String SELECT_ONE_BY_CRITERIA = "selectOneByCriteria";
+
     private static final String INSERT_ALL = "insertAll";
 
     private static final String INSERT_ALL_IGNORE = "insertAllIgnore";
 
     private static final String INSERT = "insert";
 
+    private static final String INSERT_WITH_ID = "insertWithId";
+
+    private static final String INSERT_BATCH = "insertBatch";
+
+    private static final String INSERT_ALL_BATCH = "insertAllBatch";
+
+    private static final String INSERT_ALL_IGNORE_BATCH = "insertAllIgnoreBatch";
+
+    private static final String UPSERT = "upsert";
+
+    private static final String UPSERT_BATCH = "upsertBatch";
+
     private static final String DELETE_BY_PK = "deleteByPk";
 
     private static final String DELETE_BY_CRITERIA = "deleteByCriteria";
@@ -36,11 +103,602 @@ public abstract class BaseDaoImpl<T extends B, B, PK> implements BaseDao<T, B, P
 
     private static final String UPDATE_ALL_BY_CRITERIA = "updateAllByCriteria";
 
+    private static final String SHARED_NAMESPACE = "org.nalby.yobatis.book.mapper.impl.BaseDaoImpl.";
+
+    private static final String CREATE_IN_LIST_TABLE = "createInListTable";
+
+    private static final String INSERT_IN_LIST_VALUES = "insertInListValues";
+
+    private static final String DROP_IN_LIST_TABLE = "dropInListTable";
+
+    private static final String COUNT_APPROXIMATELY = "countApproximately";
+
+    /**
+     * The temporary table long 'in' lists are loaded into, which only the session loading it sees.
+     */
+    public static final String IN_LIST_TABLE = "tmp_in_list";
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Stays below MySQL's default eq_range_index_dive_limit, so the optimizer keeps estimating
+     * 'in' lists by index dives.
+     */
+    public static final int DEFAULT_IN_LIST_SIZE = 200;
+
+    public static final int DEFAULT_IN_LIST_TABLE_SIZE = 5000;
+
+    public static final long DEFAULT_COUNT_RECONCILE_MILLIS = 60000;
+
+    public static final long DEFAULT_COUNT_CACHE_MILLIS = 1000;
+
+    private static final int COUNT_CACHE_SIZE = 10000;
+
     @Resource
     protected SqlSessionTemplate sqlSessionTemplate;
 
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private EntityCache<PK, T> entityCache;
+
+    private QueryCache queryCache;
+
+    private int inListSize = DEFAULT_IN_LIST_SIZE;
+
+    private int inListTableSize = DEFAULT_IN_LIST_TABLE_SIZE;
+
+    private Executor daoExecutor;
+
+    private boolean coalesceReads = true;
+
+    private final SingleFlight<List<Object>, Object> singleFlight = new SingleFlight<>();
+
+    private volatile KeyBatcher<PK, T> keyBatcher;
+
+    private CountMode countMode = CountMode.EXACT;
+
+    private long countReconcileMillis = DEFAULT_COUNT_RECONCILE_MILLIS;
+
+    // The columns updated by upserts, null for all updatable columns.
+    private Set<String> upsertColumns;
+
+    private ShardRouter shardRouter;
+
+    /*
+     * Set in the threads running tasks of the dao executor, whose queries run in the same thread:
+     * waiting on the pool from a pool thread could leave no thread to run the queries.
+     */
+    private static final ThreadLocal<Boolean> IN_POOL_QUERY = new ThreadLocal<>();
+
+    // The cached row count of the table, negative until counted.
+    private final AtomicLong rowCount = new AtomicLong(-1);
+
+    private volatile long rowCountReconciledAt;
+
+    private final AtomicBoolean reconcilingRowCount = new AtomicBoolean();
+
+    private volatile Cache<List<Object>, Long> countCache = newCountCache(DEFAULT_COUNT_CACHE_MILLIS);
+
     protected abstract String namespace();
 
+    protected abstract String tableName();
+
+    /**
+     * The columns the upsert statements can update, i.e. all but the primary key.
+     */
+    protected abstract Set<String> updatableColumns();
+
+    /**
+     * @return the primary key of the record.
+     */
+    protected abstract PK primaryKey(B record);
+
+    /**
+     * Copy an entity so that callers can not modify cached instances, subclasses using an
+     * entity cache should override.
+     */
+    protected T copy(T entity) {
+        return entity;
+    }
+
+    /**
+     * Set the number of records sent per batch by the batch methods.
+     * @param batchSize the chunk size, must be positive.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the max number of values per 'in' list, longer lists are split.
+     * @param inListSize the chunk size, must be positive.
+     */
+    public void setInListSize(int inListSize) {
+        if (inListSize <= 0) {
+            throw new IllegalArgumentException("inListSize must be positive.");
+        }
+        this.inListSize = inListSize;
+    }
+
+    /**
+     * Set the 'in' list size from which criteria queries load the list into a temporary table
+     * and join against it, instead of splitting the list.
+     * @param inListTableSize the list size, must be positive.
+     */
+    public void setInListTableSize(int inListTableSize) {
+        if (inListTableSize <= 0) {
+            throw new IllegalArgumentException("inListTableSize must be positive.");
+        }
+        this.inListTableSize = inListTableSize;
+    }
+
+    /**
+     * Set the columns that upserts update when the row exists, all updatable columns by default.
+     * @param upsertColumns the column names, must not be empty.
+     * @throws IllegalArgumentException if a column is not updatable.
+     */
+    public void setUpsertColumns(Collection<String> upsertColumns) {
+        noNullElements(upsertColumns, "upsertColumns must not be null or contain null.");
+        if (upsertColumns.isEmpty()) {
+            throw new IllegalArgumentException("upsertColumns must not be empty.");
+        }
+        for (String column : upsertColumns) {
+            if (!updatableColumns().contains(column)) {
+                throw new IllegalArgumentException(column + " is not an updatable column of " + tableName() + ".");
+            }
+        }
+        this.upsertColumns = new HashSet<>(upsertColumns);
+    }
+
+    /**
+     * Executor to run independent queries in parallel, autowired by name. Should be bounded by
+     * the size of the connection pool, queries run in the calling thread if null.
+     */
+    public void setDaoExecutor(Executor daoExecutor) {
+        this.daoExecutor = daoExecutor;
+    }
+
+    /**
+     * Whether concurrent identical reads outside transactions share one query, true by default.
+     * Reads with 'for update' are never shared, nor reads in transactions, which must see their own
+     * writes or snapshot.
+     */
+    public void setCoalesceReads(boolean coalesceReads) {
+        this.coalesceReads = coalesceReads;
+    }
+
+    /**
+     * Merge {@link #selectOne(Object)} calls made within {@code windowMicros} of each other into one
+     * 'in' query, 0 to disable. Only applies to callers that are not in a transaction. Trades up to
+     * {@code windowMicros} of latency for fewer queries under bursts.
+     * @param windowMicros how long a batch collects keys.
+     */
+    public void setBatchWindowMicros(long windowMicros) {
+        if (windowMicros <= 0) {
+            keyBatcher = null;
+            return;
+        }
+        // Batches run on the timer thread if there is no dao executor. They fill the entity cache if
+        // there is one, which must not miss writes a replica has yet to apply.
+        keyBatcher = new KeyBatcher<>(windowMicros, inListSize,
+                pks -> entityCache == null ? loadByPks(pks) : RoutingHint.onPrimary(() -> loadByPks(pks)),
+                command -> {
+                    if (daoExecutor != null) {
+                        executeInPool(command);
+                    } else {
+                        command.run();
+                    }
+                });
+    }
+
+    /**
+     * Choose how {@link #countAll()} counts, {@link CountMode#EXACT} by default.
+     */
+    public void setCountMode(CountMode countMode) {
+        notNull(countMode, "countMode must not be null.");
+        this.countMode = countMode;
+        rowCount.set(-1);
+    }
+
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    /**
+     * Set how often the counter of {@link CountMode#CACHED} is reconciled with an exact count.
+     * @param countReconcileMillis the period, must be positive.
+     */
+    public void setCountReconcileMillis(long countReconcileMillis) {
+        if (countReconcileMillis <= 0) {
+            throw new IllegalArgumentException("countReconcileMillis must be positive.");
+        }
+        this.countReconcileMillis = countReconcileMillis;
+    }
+
+    /**
+     * Cache the results of {@link #count(BaseCriteria)} for {@code countCacheMillis}, 0 to disable.
+     * The cache is cleared by the writes of this dao, and not used within read-write transactions,
+     * so only writes made elsewhere can be missed, for at most that long. 1 second by default.
+     */
+    public void setCountCacheMillis(long countCacheMillis) {
+        if (countCacheMillis < 0) {
+            throw new IllegalArgumentException("countCacheMillis must not be negative.");
+        }
+        countCache = newCountCache(countCacheMillis);
+    }
+
+    private static Cache<List<Object>, Long> newCountCache(long millis) {
+        if (millis == 0) {
+            return null;
+        }
+        return Caffeine.newBuilder()
+                .maximumSize(COUNT_CACHE_SIZE)
+                .expireAfterWrite(millis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Cache entities selected by primary key, null to disable. The cache is invalidated by the
+     * update and delete methods of this dao, writes made elsewhere are seen once entries expire.
+     * It is only filled outside transactions, by reads on the primary.
+     */
+    protected final void setEntityCache(EntityCache<PK, T> entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    public EntityCache<PK, T> getEntityCache() {
+        return entityCache;
+    }
+
+    /**
+     * Cache the results of selectOne, selectList and count by criteria, null to disable. The cache
+     * is invalidated by every write of this dao, writes made elsewhere are seen once entries expire.
+     * Queries 'for update' and queries in transactions bypass it. Results are loaded on the primary.
+     */
+    protected final void setQueryCache(QueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Shard the table by the router, null to keep it in one database. Single-record operations run on
+     * the shard of the record, criteria operations on the shards the criteria may match, in parallel
+     * outside transactions, and their rows are merged in the order of the criteria. A transaction
+     * can only run on one shard. The data source must route statements by
+     * {@link org.nalby.yobatis.book.datasource.ShardContext}, and the mapper must define an
+     * 'insertWithId' statement that {@link #insert(Object)} runs instead of the generated 'insert'.
+     */
+    protected final void setShardRouter(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    protected final boolean isSharded() {
+        return shardRouter != null;
+    }
+
+    /**
+     * @return true if the criteria queries may be served from the query cache, here and now.
+     */
+    protected final boolean isQueryCached(BaseCriteria criteria) {
+        return queryCache != null && fillsCaches() && !Boolean.TRUE.equals(criteria.getForUpdate());
+    }
+
+    /**
+     * @return true if the criteria has an 'in' list longer than {@link #setInListSize(int)}, which the
+     * criteria queries split or load into a temporary table.
+     */
+    protected final boolean hasLongInList(BaseCriteria criteria) {
+        return longInList(criteria) != null;
+    }
+
+    /*
+     * Entities read in a read-write transaction may be uncommitted, they are not cached.
+     */
+    private boolean outsideWriteTransaction() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /*
+     * Run the task on the dao executor, marked as in the pool. A rejected task may run in its caller,
+     * which may be a marked pool thread already.
+     */
+    private void executeInPool(Runnable task) {
+        daoExecutor.execute(() -> {
+            Boolean previous = IN_POOL_QUERY.get();
+            IN_POOL_QUERY.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    IN_POOL_QUERY.remove();
+                }
+            }
+        });
+    }
+
+    /*
+     * Caches are only filled outside transactions, by reads on the primary: a read-only transaction
+     * may read from a lagging replica, whose rows would stay cached after the evictions of the writes
+     * it has yet to apply.
+     */
+    private boolean fillsCaches() {
+        return !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /*
+     * Queries can only move to other threads when the caller is not in a transaction: the transaction
+     * is bound to the calling thread, and a caller holding a connection while waiting for pool threads
+     * that need connections too could exhaust the pool.
+     */
+    private boolean canRunInParallel() {
+        return daoExecutor != null && !TransactionSynchronizationManager.isActualTransactionActive()
+                && IN_POOL_QUERY.get() == null;
+    }
+
+    /*
+     * The shards to run a criteria query on, a single null shard if the table is not sharded.
+     */
+    private List<Integer> shardsOf(BaseCriteria criteria) {
+        return shardRouter == null ? Collections.<Integer>singletonList(null) : shardRouter.shardsOf(criteria);
+    }
+
+    private List<Integer> allShards() {
+        return shardRouter == null ? Collections.<Integer>singletonList(null) : shardRouter.allShards();
+    }
+
+    private <R> R onShard(Integer shard, Supplier<R> work) {
+        return shard == null ? work.get() : ShardContext.on(shard, work);
+    }
+
+    private Integer shardOfPk(PK pk) {
+        return shardRouter == null ? null : shardRouter.shardOfId(pk);
+    }
+
+    /*
+     * The shard of the record, whose id is generated if it has none.
+     */
+    private Integer shardOf(B record) {
+        return shardRouter == null ? null : shardRouter.route(record);
+    }
+
+    /*
+     * Run the work on each shard, returns the results in shard order.
+     */
+    private <R> List<R> onEachShard(List<Integer> shards, Supplier<R> work) {
+        return queryAll(shards, shard -> onShard(shard, work));
+    }
+
+    /*
+     * Run the work on the items of each shard, returns the results in the order the shards first
+     * appear in the items.
+     */
+    private <E, R> List<R> onShardsOf(List<E> items, Function<E, Integer> shardOf, Function<List<E>, R> work) {
+        Map<Integer, List<E>> groups = new LinkedHashMap<>();
+        for (E item : items) {
+            groups.computeIfAbsent(shardOf.apply(item), shard -> new ArrayList<>()).add(item);
+        }
+        return queryAll(new ArrayList<>(groups.entrySet()), group -> onShard(group.getKey(), () -> work.apply(group.getValue())));
+    }
+
+    /*
+     * Run the query through the query cache if its result can be cached. Transactions bypass it, besides
+     * filling it: the snapshot of a transaction may predate a cached result, which the cache can not
+     * tell as it only knows when the query runs.
+     */
+    private <R> R cached(String statement, BaseCriteria criteria, Supplier<R> query, UnaryOperator<R> share) {
+        if (!isQueryCached(criteria)) {
+            return query.get();
+        }
+        // A snapshot of the criteria, which may be modified after the call. The limit and offset are
+        // bound outside the shape.
+        List<Object> key = Arrays.asList(statement, criteria.getShape(), criteria.getBoundValues(),
+                criteria.getLimit(), criteria.getOffset(), ShardContext.current());
+        return share.apply(queryCache.get(key, () -> RoutingHint.onPrimary(query)));
+    }
+
+    /*
+     * Run the query, sharing it with concurrent callers of the same statement and parameter if possible.
+     */
+    @SuppressWarnings("unchecked")
+    private <R> R coalesce(String statement, Object parameter, Supplier<R> query, UnaryOperator<R> share) {
+        if (!coalesceReads || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+        if (parameter instanceof BaseCriteria && Boolean.TRUE.equals(((BaseCriteria) parameter).getForUpdate())) {
+            return query.get();
+        }
+        List<Object> key = Arrays.asList(statement, parameter, ShardContext.current(), RoutingHint.isOnPrimary());
+        return (R) singleFlight.execute(key, query::get,
+                value -> share.apply((R) value));
+    }
+
+    private T nullableCopy(T entity) {
+        return entity == null ? null : copy(entity);
+    }
+
+    private List<T> copyAll(List<T> entities) {
+        List<T> copies = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            copies.add(copy(entity));
+        }
+        return copies;
+    }
+
+    private T loadByPk(PK pk) {
+        // Batches run on the dao executor, which a pool thread must not wait for.
+        if (keyBatcher != null && !TransactionSynchronizationManager.isActualTransactionActive()
+                && IN_POOL_QUERY.get() == null) {
+            return nullableCopy(keyBatcher.load(pk));
+        }
+        return onShard(shardOfPk(pk), () -> coalesce(SELECT_BY_PK, pk, () -> doSelectOne(SELECT_BY_PK, pk), this::copy));
+    }
+
+    private Map<PK, T> loadByPks(List<PK> pks) {
+        Map<PK, T> entities = new HashMap<>();
+        for (T entity : selectByPks(pks)) {
+            entities.put(primaryKey(entity), entity);
+        }
+        return entities;
+    }
+
+    private List<T> selectByPks(List<PK> pks) {
+        List<T> result = new ArrayList<>(pks.size());
+        for (List<T> rows : onShardsOf(pks, this::shardOfPk, shardPks -> doSelectChunks(SELECT_BY_PKS, shardPks, inListSize))) {
+            result.addAll(rows);
+        }
+        return result;
+    }
+
+    /*
+     * Run the action now, and again once the transaction completes if there is one.
+     */
+    private void nowAndAfterCompletion(final Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    /*
+     * Called after the write. Evict now and again once the transaction completes, a concurrent
+     * reader might have cached the old committed row in between.
+     */
+    private void evict(final PK pk) {
+        if (entityCache == null || pk == null) {
+            return;
+        }
+        nowAndAfterCompletion(() -> entityCache.invalidate(pk));
+    }
+
+    private void evictAll(Collection<? extends B> records) {
+        if (entityCache == null) {
+            return;
+        }
+        final List<PK> pks = new ArrayList<>(records.size());
+        for (B record : records) {
+            PK pk = primaryKey(record);
+            if (pk != null) {
+                pks.add(pk);
+            }
+        }
+        nowAndAfterCompletion(() -> entityCache.invalidateAll(pks));
+    }
+
+    private void evictAll() {
+        if (entityCache == null) {
+            return;
+        }
+        nowAndAfterCompletion(entityCache::invalidateAll);
+    }
+
+    /*
+     * Called after every write, with the number of rows it added to (or removed from) the table.
+     */
+    private void countsChanged(final long rows) {
+        final Cache<List<Object>, Long> cache = countCache;
+        if (cache != null) {
+            nowAndAfterCompletion(cache::invalidateAll);
+        }
+        if (queryCache != null) {
+            nowAndAfterCompletion(queryCache::invalidateAll);
+        }
+        if (countMode != CountMode.CACHED || rows == 0) {
+            return;
+        }
+        // Uncounted stays uncounted, the first count sees all committed rows.
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            rowCount.updateAndGet(count -> count < 0 ? count : count + rows);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                    rowCount.updateAndGet(count -> count < 0 ? count : count + rows);
+                }
+            }
+        });
+    }
+
+    /*
+     * Called after a write that added an unknown number of rows, the next count is exact.
+     */
+    private void countsUnknown() {
+        final Cache<List<Object>, Long> cache = countCache;
+        if (cache != null) {
+            nowAndAfterCompletion(cache::invalidateAll);
+        }
+        if (queryCache != null) {
+            nowAndAfterCompletion(queryCache::invalidateAll);
+        }
+        if (countMode == CountMode.CACHED) {
+            nowAndAfterCompletion(() -> rowCount.set(-1));
+        }
+    }
+
+    private int inserted(int rows) {
+        countsChanged(rows);
+        return rows;
+    }
+
+    private long countAllExactly() {
+        long count = 0;
+        for (Long shardCount : onEachShard(allShards(), () -> sqlSessionTemplate.<Long>selectOne(namespace() + COUNT, null))) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    private long reconcileRowCount() {
+        long count = RoutingHint.onPrimary(this::countAllExactly);
+        rowCount.set(count);
+        rowCountReconciledAt = System.currentTimeMillis();
+        return count;
+    }
+
+    private long cachedRowCount() {
+        // The counter only knows committed rows.
+        if (!outsideWriteTransaction()) {
+            return countAllExactly();
+        }
+        long count = rowCount.get();
+        if (count < 0) {
+            return fillsCaches() ? reconcileRowCount() : countAllExactly();
+        }
+        if (System.currentTimeMillis() - rowCountReconciledAt > countReconcileMillis
+                && (daoExecutor != null || fillsCaches()) && reconcilingRowCount.compareAndSet(false, true)) {
+            Runnable reconcile = () -> {
+                try {
+                    reconcileRowCount();
+                } finally {
+                    reconcilingRowCount.set(false);
+                }
+            };
+            if (daoExecutor != null) {
+                executeInPool(reconcile);
+            } else {
+                reconcile.run();
+            }
+        }
+        return count;
+    }
+
     protected final T doSelectOne(String statement, Object parameter) {
         return sqlSessionTemplate.selectOne(namespace() + statement, parameter);
     }
@@ -61,15 +719,227 @@ public abstract class BaseDaoImpl<T extends B, B, PK> implements BaseDao<T, B, P
         return sqlSessionTemplate.delete(namespace() + statement, parameter);
     }
 
+    /**
+     * Execute the statement once per parameter through a batch executor, flushing every
+     * {@code batchSize} parameters. The batch runs on a session of its own, which is not bound to
+     * the current transaction, so that the other statements of the transaction keep their executor;
+     * it still runs on the connection of the transaction if there is one.
+     * @return the update counts, one per parameter and in the same order.
+     */
+    protected final int[] doBatch(String statement, List<?> parameters) {
+        SqlSessionFactory factory = sqlSessionTemplate.getSqlSessionFactory();
+        // The Spring managed transaction of the session takes the connection bound to the transaction.
+        SqlSession session = factory.openSession(ExecutorType.BATCH);
+        try {
+            int[] counts = new int[parameters.size()];
+            int index = 0;
+            for (int i = 0; i < parameters.size(); i++) {
+                session.update(namespace() + statement, parameters.get(i));
+                if ((i + 1) % batchSize == 0 || i == parameters.size() - 1) {
+                    for (BatchResult result : session.flushStatements()) {
+                        for (int count : result.getUpdateCounts()) {
+                            counts[index++] = count;
+                        }
+                    }
+                }
+            }
+            // Only commits a connection of its own, which is not in auto-commit mode.
+            session.commit(true);
+            return counts;
+        } catch (PersistenceException e) {
+            RuntimeException translated = sqlSessionTemplate.getPersistenceExceptionTranslator()
+                    .translateExceptionIfPossible(e);
+            throw translated != null ? translated : e;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Execute a multi-row statement once per chunk of {@code batchSize} records, the chunk
+     * is passed to the statement as 'list'.
+     * @return the sum of affected rows.
+     */
+    protected final int doInsertChunks(String statement, List<? extends B> records) {
+        int inserted = 0;
+        for (int from = 0; from < records.size(); from += batchSize) {
+            List<? extends B> chunk = records.subList(from, Math.min(from + batchSize, records.size()));
+            inserted += doInsert(statement, chunk);
+        }
+        return inserted;
+    }
+
+    /**
+     * Run the statement once per chunk of {@code parameters}, the chunk is passed as 'list'.
+     * Chunks run in parallel on the dao executor when there is one and no transaction.
+     * @return the results of all chunks, in chunk order.
+     */
+    protected final List<T> doSelectChunks(String statement, List<?> parameters, int chunkSize) {
+        List<List<?>> chunks = new ArrayList<>();
+        for (int from = 0; from < parameters.size(); from += chunkSize) {
+            chunks.add(parameters.subList(from, Math.min(from + chunkSize, parameters.size())));
+        }
+        List<T> result = new ArrayList<>();
+        for (List<T> rows : queryAll(chunks, chunk -> doSelectList(statement, chunk))) {
+            result.addAll(rows);
+        }
+        return result;
+    }
+
+    /*
+     * Run the query once per parameter, in parallel if possible.
+     * Returns the results in parameter order.
+     */
+    private <P, R> List<R> queryAll(List<P> parameters, Function<P, R> query) {
+        List<R> result = new ArrayList<>(parameters.size());
+        if (parameters.size() < 2 || !canRunInParallel()) {
+            for (P parameter : parameters) {
+                result.add(query.apply(parameter));
+            }
+            return result;
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(parameters.size());
+        Integer shard = ShardContext.current();
+        boolean onPrimary = RoutingHint.isOnPrimary();
+        for (P parameter : parameters) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                Supplier<R> work = () -> onShard(shard, () -> query.apply(parameter));
+                return onPrimary ? RoutingHint.onPrimary(work) : work.get();
+            }, this::executeInPool));
+        }
+        try {
+            for (CompletableFuture<R> future : futures) {
+                result.add(future.join());
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return result;
+    }
+
+    /*
+     * The criterion of the longest 'in' list if it's longer than inListSize, null otherwise.
+     */
+    private Criterion longInList(BaseCriteria criteria) {
+        // The size alone spares criteria templates building their criterion objects.
+        return criteria.getLargestInListSize() > inListSize ? criteria.getLargestInList() : null;
+    }
+
+    /*
+     * A long 'in' list up to inListTableSize is split into queries of inListSize values, which run in
+     * parallel, and their rows are merged in the order of the criteria. Beyond that, or if the rows of
+     * the chunks can not be merged, the list goes to a temporary table.
+     */
+    private boolean splitsInList(Criterion inList) {
+        return ((List<?>) inList.getValue()).size() <= inListTableSize;
+    }
+
+    private List<T> selectByLongInList(BaseCriteria criteria, Criterion inList) {
+        if (!splitsInList(inList)) {
+            return withInListTable(criteria, inList,
+                (session, joined) -> session.<T>selectList(namespace() + SELECT_BY_CRITERIA, joined));
+        }
+        return merge(queryAll(criteria.splitInList(inList, inListSize),
+                chunk -> doSelectList(SELECT_BY_CRITERIA, chunk)), criteria);
+    }
+
+    /*
+     * Merge the rows of queries of parts of the table, each selecting the first limit + offset rows
+     * of its part, into the rows the criteria selects from the whole table.
+     */
+    private List<T> merge(List<List<T>> parts, BaseCriteria criteria) {
+        // Rows matching other ORed groups come back from every chunk of an 'in' list.
+        Map<PK, T> unique = new LinkedHashMap<>();
+        for (List<T> rows : parts) {
+            for (T row : rows) {
+                unique.putIfAbsent(primaryKey(row), row);
+            }
+        }
+        List<T> merged = new ArrayList<>(unique.values());
+        SortKeyOrder.sort(merged, criteria.getSortKeys());
+        long from = criteria.getOffset() == null ? 0 : criteria.getOffset();
+        long to = criteria.getLimit() == null ? merged.size() : Math.min(merged.size(), from + criteria.getLimit());
+        return from >= to ? new ArrayList<T>() : new ArrayList<>(merged.subList((int) from, (int) to));
+    }
+
+    /*
+     * Select the rows of the criteria from several shards.
+     */
+    private List<T> selectFromShards(List<Integer> shards, BaseCriteria criteria) {
+        BaseCriteria split = criteria.withoutOffset();
+        return merge(onEachShard(shards, () -> selectListOnShard(split)), criteria);
+    }
+
+    private long countByLongInList(BaseCriteria criteria, Criterion inList) {
+        int groups = 0;
+        for (Criteria group : criteria.getOredCriteria()) {
+            groups += group.isValid() ? 1 : 0;
+        }
+        // Chunks of a single group select disjoint rows, with more groups a row may be counted twice.
+        if (groups > 1 || !splitsInList(inList)) {
+            return withInListTable(criteria, inList,
+                (session, joined) -> session.<Long>selectOne(namespace() + COUNT, joined));
+        }
+        long count = 0;
+        for (Long chunkCount : queryAll(criteria.splitInList(inList, inListSize),
+                chunk -> sqlSessionTemplate.<Long>selectOne(namespace() + COUNT, chunk))) {
+            count += chunkCount;
+        }
+        return count;
+    }
+
+    /*
+     * Load the values of the 'in' list into a temporary table and run the query with the list replaced
+     * by a sub-query of the table. All statements run on one session, which joins the transaction if
+     * there is one, as temporary tables only live in the connection that creates them.
+     */
+    private <R> R withInListTable(BaseCriteria criteria, Criterion inList, BiFunction<SqlSession, BaseCriteria, R> query) {
+        String condition = inList.getCondition();
+        String column = condition.substring(0, condition.length() - " in".length());
+        Map<String, Object> param = new HashMap<>();
+        param.put("inListTable", IN_LIST_TABLE);
+        param.put("inListColumn", column);
+        param.put("sourceTable", tableName());
+        SqlSessionFactory factory = sqlSessionTemplate.getSqlSessionFactory();
+        SqlSession session = SqlSessionUtils.getSqlSession(factory, sqlSessionTemplate.getExecutorType(),
+                sqlSessionTemplate.getPersistenceExceptionTranslator());
+        try {
+            // A failed call might have left the table in the connection.
+            session.update(SHARED_NAMESPACE + DROP_IN_LIST_TABLE, param);
+            session.update(SHARED_NAMESPACE + CREATE_IN_LIST_TABLE, param);
+            List<Object> values = new ArrayList<Object>(new LinkedHashSet<Object>((List<?>) inList.getValue()));
+            for (int from = 0; from < values.size(); from += batchSize) {
+                param.put("values", values.subList(from, Math.min(from + batchSize, values.size())));
+                session.insert(SHARED_NAMESPACE + INSERT_IN_LIST_VALUES, param);
+            }
+            R result = query.apply(session, criteria.replaceInList(inList, column + " in (select v from " + IN_LIST_TABLE + ")"));
+            session.update(SHARED_NAMESPACE + DROP_IN_LIST_TABLE, param);
+            return result;
+        } catch (PersistenceException e) {
+            RuntimeException translated = sqlSessionTemplate.getPersistenceExceptionTranslator()
+                    .translateExceptionIfPossible(e);
+            throw translated != null ? translated : e;
+        } finally {
+            SqlSessionUtils.closeSqlSession(session, factory);
+        }
+    }
+
     protected final void notNull(Object object, String errMsg) {
         if (object == null) {
             throw new IllegalArgumentException(errMsg);
         }
     }
 
+    protected final void noNullElements(Collection<?> collection, String errMsg) {
+        notNull(collection, errMsg);
+        for (Object item : collection) {
+            notNull(item, errMsg);
+        }
+    }
+
     protected void validateCriteria(BaseCriteria criteria) {
         notNull(criteria, "criteria must not be null.");
-        if (criteria.getOredCriteria().isEmpty()) {
+        if (criteria.isEmpty()) {
             throw new IllegalArgumentException("criteria must not be empty.");
         }
     }
@@ -86,85 +956,431 @@ public abstract class BaseDaoImpl<T extends B, B, PK> implements BaseDao<T, B, P
     @Override
     public final int insertAll(B record) {
         notNull(record, "record must not be null.");
-        return doInsert(INSERT_ALL, record);
+        return inserted(onShard(shardOf(record), () -> doInsert(INSERT_ALL, record)));
     }
 
     @Override
     public final int insertAllIgnore(B record) {
         notNull(record, "record must not be null.");
-        return doInsert(INSERT_ALL_IGNORE, record);
+        return inserted(onShard(shardOf(record), () -> doInsert(INSERT_ALL_IGNORE, record)));
     }
 
     @Override
     public final int insert(B record) {
         notNull(record, "record must not be null.");
-        return doInsert(INSERT, record);
+        // The generated insert leaves the id to the database, a sharded record has it already.
+        String statement = shardRouter == null ? INSERT : INSERT_WITH_ID;
+        return inserted(onShard(shardOf(record), () -> doInsert(statement, record)));
+    }
+
+    @Override
+    public final int insertBatch(List<? extends B> records) {
+        noNullElements(records, "records must not be null or contain null.");
+        int inserted = 0;
+        for (int count : doBatchByShard(INSERT_BATCH, records)) {
+            // Batches rewritten by the driver do not report per-row counts.
+            inserted += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+        }
+        return inserted(inserted);
+    }
+
+    @Override
+    public final int insertAllBatch(List<? extends B> records) {
+        noNullElements(records, "records must not be null or contain null.");
+        return inserted(doInsertChunksByShard(INSERT_ALL_BATCH, records));
+    }
+
+    @Override
+    public final int insertAllIgnoreBatch(List<? extends B> records) {
+        noNullElements(records, "records must not be null or contain null.");
+        return inserted(doInsertChunksByShard(INSERT_ALL_IGNORE_BATCH, records));
+    }
+
+    /*
+     * doBatch on the records of each shard, the update counts are in the order of the records.
+     */
+    private int[] doBatchByShard(String statement, List<? extends B> records) {
+        if (shardRouter == null) {
+            return doBatch(statement, records);
+        }
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            groups.computeIfAbsent(shardOf(records.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+        List<Map.Entry<Integer, List<Integer>>> shards = new ArrayList<>(groups.entrySet());
+        List<int[]> shardCounts = queryAll(shards, shard -> onShard(shard.getKey(), () -> {
+            List<B> shardRecords = new ArrayList<>(shard.getValue().size());
+            for (int i : shard.getValue()) {
+                shardRecords.add(records.get(i));
+            }
+            return doBatch(statement, shardRecords);
+        }));
+        int[] counts = new int[records.size()];
+        for (int i = 0; i < shards.size(); i++) {
+            List<Integer> indexes = shards.get(i).getValue();
+            for (int j = 0; j < indexes.size(); j++) {
+                counts[indexes.get(j)] = shardCounts.get(i)[j];
+            }
+        }
+        return counts;
+    }
+
+    private int doInsertChunksByShard(String statement, List<? extends B> records) {
+        int inserted = 0;
+        for (int count : onShardsOf(records, this::shardOf, shardRecords -> doInsertChunks(statement, shardRecords))) {
+            inserted += count;
+        }
+        return inserted;
+    }
+
+    private Map<String, Object> makeUpsertParam(String name, Object value) {
+        Map<String, Object> param = new HashMap<>();
+        param.put(name, value);
+        param.put("columns", upsertColumns != null ? upsertColumns : updatableColumns());
+        return param;
+    }
+
+    @Override
+    public final int upsert(B record) {
+        notNull(record, "record must not be null.");
+        int affected = onShard(shardOf(record), () -> doInsert(UPSERT, makeUpsertParam("record", record)));
+        evict(primaryKey(record));
+        // An insert and an unchanged row may both count as 1.
+        countsUnknown();
+        return affected;
+    }
+
+    @Override
+    public final int upsertBatch(List<? extends B> records) {
+        noNullElements(records, "records must not be null or contain null.");
+        int affected = 0;
+        for (int count : onShardsOf(records, this::shardOf, shardRecords -> {
+            int shardAffected = 0;
+            for (int from = 0; from < shardRecords.size(); from += batchSize) {
+                List<? extends B> chunk = shardRecords.subList(from, Math.min(from + batchSize, shardRecords.size()));
+                shardAffected += doInsert(UPSERT_BATCH, makeUpsertParam("list", chunk));
+            }
+            return shardAffected;
+        })) {
+            affected += count;
+        }
+        evictAll(records);
+        countsUnknown();
+        return affected;
     }
 
     @Override
     public final T selectOne(PK pk) {
         notNull(pk, "Primary key must not be null.");
-        return doSelectOne(SELECT_BY_PK, pk);
+        // A read-write transaction must see its own writes, which a concurrent reader may have
+        // overwritten in the cache with the committed rows.
+        if (entityCache == null || !outsideWriteTransaction()) {
+            return loadByPk(pk);
+        }
+        if (!fillsCaches()) {
+            T cached = entityCache.getIfPresent(pk);
+            return cached != null ? copy(cached) : loadByPk(pk);
+        }
+        return nullableCopy(entityCache.get(pk, key -> nullableCopy(RoutingHint.onPrimary(() -> loadByPk(key)))));
+    }
+
+    @Override
+    public final Map<PK, T> selectMany(Collection<PK> pks) {
+        noNullElements(pks, "pks must not be null or contain null.");
+        Set<PK> keys = new LinkedHashSet<>(pks);
+        Map<PK, T> found = new HashMap<>();
+        List<PK> missing = new ArrayList<>();
+        // As selectOne, read-write transactions bypass the cache to see their own writes.
+        boolean readCache = entityCache != null && outsideWriteTransaction();
+        boolean populateCache = readCache && fillsCaches();
+        for (PK pk : keys) {
+            T cached = readCache ? entityCache.getIfPresent(pk) : null;
+            if (cached != null) {
+                found.put(pk, copy(cached));
+            } else {
+                missing.add(pk);
+            }
+        }
+        List<T> loaded = populateCache ? RoutingHint.onPrimary(() -> selectByPks(missing)) : selectByPks(missing);
+        for (T entity : loaded) {
+            PK pk = primaryKey(entity);
+            found.put(pk, entity);
+            if (populateCache) {
+                entityCache.put(pk, copy(entity));
+            }
+        }
+        Map<PK, T> result = new LinkedHashMap<>();
+        for (PK pk : keys) {
+            T entity = found.get(pk);
+            if (entity != null) {
+                result.put(pk, entity);
+            }
+        }
+        return result;
     }
 
     @Override
     public final T selectOne(BaseCriteria criteria) {
         validateCriteria(criteria);
-        return doSelectOne(SELECT_BY_CRITERIA, criteria);
+        return cached(SELECT_ONE_BY_CRITERIA, criteria, () -> selectOneFromShards(criteria), this::nullableCopy);
+    }
+
+    private T selectOneFromShards(BaseCriteria criteria) {
+        List<Integer> shards = shardsOf(criteria);
+        if (shards.size() == 1) {
+            return onShard(shards.get(0), () -> selectOneOnShard(criteria));
+        }
+        List<T> rows = selectFromShards(shards, criteria);
+        if (rows.size() > 1) {
+            throw sqlSessionTemplate.getPersistenceExceptionTranslator().translateExceptionIfPossible(new TooManyResultsException(
+                    "Expected one result (or null) to be returned by selectOne(), but found: " + rows.size()));
+        }
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private T selectOneOnShard(BaseCriteria criteria) {
+        Criterion inList = longInList(criteria);
+        if (inList != null) {
+            return withInListTable(criteria, inList,
+                (session, joined) -> session.<T>selectOne(namespace() + SELECT_BY_CRITERIA, joined));
+        }
+        return coalesce(SELECT_BY_CRITERIA, criteria, () -> doSelectOne(SELECT_BY_CRITERIA, criteria), this::copy);
     }
 
     @Override
     public final List<T> selectList(BaseCriteria criteria) {
         validateCriteria(criteria);
-        return doSelectList(SELECT_BY_CRITERIA, criteria);
+        return selectListOnShards(criteria);
+    }
+
+    private List<T> selectListOnShards(BaseCriteria criteria) {
+        return cached(SELECT_BY_CRITERIA, criteria, () -> {
+            List<Integer> shards = shardsOf(criteria);
+            if (shards.size() == 1) {
+                return onShard(shards.get(0), () -> selectListOnShard(criteria));
+            }
+            return selectFromShards(shards, criteria);
+        }, this::copyAll);
+    }
+
+    private List<T> selectListOnShard(BaseCriteria criteria) {
+        Criterion inList = longInList(criteria);
+        if (inList != null) {
+            return selectByLongInList(criteria, inList);
+        }
+        return coalesce(SELECT_BY_CRITERIA, criteria, () -> doSelectList(SELECT_BY_CRITERIA, criteria), this::copyAll);
+    }
+
+    @Override
+    public final long selectStream(BaseCriteria criteria, Predicate<? super T> consumer) {
+        validateCriteria(criteria);
+        notNull(consumer, "consumer must not be null.");
+        List<Integer> shards = shardsOf(criteria);
+        if (shards.size() > 1 && (criteria.getOrderByClause() != null || criteria.getLimit() != null
+                || criteria.getOffset() != null)) {
+            // Rows of several shards are merged in memory when their order or number matters.
+            long count = 0;
+            for (T row : selectFromShards(shards, criteria)) {
+                count++;
+                if (!consumer.test(row)) {
+                    break;
+                }
+            }
+            return count;
+        }
+        long count = 0;
+        for (Integer shard : shards) {
+            StreamingResultHandler<T> handler = new StreamingResultHandler<>(consumer);
+            onShard(shard, () -> streamOnShard(criteria, handler));
+            count += handler.getCount();
+            if (handler.isCancelled()) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private Void streamOnShard(BaseCriteria criteria, StreamingResultHandler<T> handler) {
+        Criterion inList = longInList(criteria);
+        try {
+            if (inList != null) {
+                withInListTable(criteria, inList, (session, joined) -> {
+                    session.select(namespace() + SELECT_BY_CRITERIA_STREAM, joined, handler);
+                    return null;
+                });
+            } else {
+                sqlSessionTemplate.select(namespace() + SELECT_BY_CRITERIA_STREAM, criteria, handler);
+            }
+        } catch (RuntimeException e) {
+            // Cancelling the statement may surface as an 'interrupted' error while the result set closes.
+            if (!handler.isCancelled()) {
+                throw e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public final Page<T> selectPage(BaseCriteria criteria, String pageToken, int pageSize) {
+        notNull(criteria, "criteria must not be null.");
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive.");
+        }
+        if (criteria.getOffset() != null) {
+            throw new IllegalStateException("keyset pagination can not be combined with offset.");
+        }
+        // Seek on a copy, the caller may reuse the criteria for the next page. One extra row tells
+        // whether there is a next page.
+        BaseCriteria page = criteria.withoutOffset();
+        page.seek(pageToken == null ? null : PageTokens.decode(pageToken), pageSize + 1L);
+        // The first page of an empty criteria selects the whole table, which selectList refuses.
+        List<T> rows = selectListOnShards(page);
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        rows.remove(pageSize);
+        MetaObject last = SystemMetaObject.forObject(rows.get(pageSize - 1));
+        List<SortKey> sortKeys = page.getSortKeys();
+        Object[] lastKey = new Object[sortKeys.size()];
+        for (int i = 0; i < lastKey.length; i++) {
+            lastKey[i] = last.getValue(sortKeys.get(i).getField());
+        }
+        return new Page<>(rows, PageTokens.encode(lastKey));
     }
 
     @Override
     public final long countAll() {
-        return sqlSessionTemplate.selectOne(namespace() + COUNT, null);
+        if (countMode == CountMode.CACHED) {
+            return cachedRowCount();
+        }
+        if (countMode == CountMode.APPROXIMATE) {
+            long count = 0;
+            for (Long rows : onEachShard(allShards(), () -> {
+                Long estimate = sqlSessionTemplate.selectOne(SHARED_NAMESPACE + COUNT_APPROXIMATELY, tableName());
+                return estimate != null ? estimate : sqlSessionTemplate.<Long>selectOne(namespace() + COUNT, null);
+            })) {
+                count += rows;
+            }
+            return count;
+        }
+        return countAllExactly();
     }
 
     @Override
     public final long count(BaseCriteria criteria) {
         validateCriteria(criteria);
-        return sqlSessionTemplate.selectOne(this.namespace() + COUNT, criteria);
+        return cached(COUNT, criteria, () -> {
+            long count = 0;
+            for (Long shardCount : onEachShard(shardsOf(criteria), () -> countOnShard(criteria))) {
+                count += shardCount;
+            }
+            return count;
+        }, UnaryOperator.identity());
+    }
+
+    private long countOnShard(BaseCriteria criteria) {
+        Criterion inList = longInList(criteria);
+        if (inList != null) {
+            return countByLongInList(criteria, inList);
+        }
+        Cache<List<Object>, Long> cache = fillsCaches() ? countCache : null;
+        List<Object> key = null;
+        if (cache != null) {
+            // A snapshot of the criteria, which may be modified after the call.
+            key = Arrays.asList(criteria.getShape(), criteria.getBoundValues(), ShardContext.current());
+            Long cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Supplier<Long> query = () -> coalesce(COUNT, criteria,
+                () -> sqlSessionTemplate.selectOne(this.namespace() + COUNT, criteria), UnaryOperator.identity());
+        Long count = cache != null ? RoutingHint.onPrimary(query) : query.get();
+        if (cache != null) {
+            cache.put(key, count);
+        }
+        return count;
     }
 
     @Override
     public final int update(B record) {
         notNull(record, "record must not be null.");
-        return doUpdate(UPDATE, record);
+        int updated = onShard(shardOfPk(primaryKey(record)), () -> doUpdate(UPDATE, record));
+        evict(primaryKey(record));
+        countsChanged(0);
+        return updated;
     }
 
     @Override
     public final int updateAll(B record) {
         notNull(record, "record must not be null.");
-        return doUpdate(UPDATE_ALL, record);
+        int updated = onShard(shardOfPk(primaryKey(record)), () -> doUpdate(UPDATE_ALL, record));
+        evict(primaryKey(record));
+        countsChanged(0);
+        return updated;
+    }
+
+    @Override
+    public final int[] updateBatch(List<? extends B> records) {
+        noNullElements(records, "records must not be null or contain null.");
+        return updatedBatch(doBatchByShard(UPDATE, records), records);
+    }
+
+    @Override
+    public final int[] updateAllBatch(List<? extends B> records) {
+        noNullElements(records, "records must not be null or contain null.");
+        return updatedBatch(doBatchByShard(UPDATE_ALL, records), records);
+    }
+
+    private static int sum(List<Integer> counts) {
+        int sum = 0;
+        for (int count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    private int[] updatedBatch(int[] counts, List<? extends B> records) {
+        evictAll(records);
+        countsChanged(0);
+        return counts;
     }
 
     @Override
     public final int update(B record, BaseCriteria criteria) {
         notNull(record, "record must not be null.");
         validateCriteria(criteria);
-        return doUpdate(UPDATE_BY_CRITERIA, makeParam(record, criteria));
+        int updated = sum(onEachShard(shardsOf(criteria), () -> doUpdate(UPDATE_BY_CRITERIA, makeParam(record, criteria))));
+        evictAll();
+        countsChanged(0);
+        return updated;
     }
 
     @Override
     public final int updateAll(B record, BaseCriteria criteria) {
         notNull(record, "record must not be null.");
         validateCriteria(criteria);
-        return doUpdate(UPDATE_ALL_BY_CRITERIA, makeParam(record, criteria));
+        int updated = sum(onEachShard(shardsOf(criteria), () -> doUpdate(UPDATE_ALL_BY_CRITERIA, makeParam(record, criteria))));
+        evictAll();
+        countsChanged(0);
+        return updated;
     }
 
     @Override
     public final int delete(PK pk) {
         notNull(pk, "pk must not be null.");
-        return doDelete(DELETE_BY_PK, pk);
+        int deleted = onShard(shardOfPk(pk), () -> doDelete(DELETE_BY_PK, pk));
+        evict(pk);
+        countsChanged(-deleted);
+        return deleted;
     }
 
     @Override
     public final int delete(BaseCriteria criteria) {
         validateCriteria(criteria);
-        return doDelete(DELETE_BY_CRITERIA, criteria);
+        int deleted = sum(onEachShard(shardsOf(criteria), () -> doDelete(DELETE_BY_CRITERIA, criteria)));
+        evictAll();
+        countsChanged(-deleted);
+        return deleted;
     }
 }
\ No newline at end of file
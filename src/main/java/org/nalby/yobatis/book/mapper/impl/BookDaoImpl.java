@@ -1,8 +1,25 @@
 package org.nalby.yobatis.book.mapper.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Resource;
+import org.nalby.yobatis.book.cache.EntityCache;
+import org.nalby.yobatis.book.cache.QueryCache;
+import org.nalby.yobatis.book.mapper.AuthorDao;
 import org.nalby.yobatis.book.mapper.BookDao;
+import org.nalby.yobatis.book.mapper.FetchMode;
+import org.nalby.yobatis.book.model.Author;
 import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.BookColumns;
+import org.nalby.yobatis.book.model.BookWithAuthor;
 import org.nalby.yobatis.book.model.base.BaseBook;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
 import org.springframework.stereotype.Repository;
 
 /*
@@ -10,9 +27,94 @@ import org.springframework.stereotype.Repository;
  */
 @Repository("bookDao")
 public final class BookDaoImpl extends BaseDaoImpl<Book, BaseBook, Long> implements BookDao {
+    private static final Set<String> UPDATABLE_COLUMNS =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList("name", "author")));
+    private static final String SELECT_WITH_AUTHOR_BY_CRITERIA = "selectWithAuthorByCriteria";
+
+    @Resource
+    private AuthorDao authorDao;
 
     @Override
     protected String namespace() {
         return "org.nalby.yobatis.book.mapper.impl.BookDaoImpl.";
     }
-}
\ No newline at end of file
+
+    @Override
+    protected String tableName() {
+        return "book";
+    }
+
+    @Override
+    protected Set<String> updatableColumns() {
+        return UPDATABLE_COLUMNS;
+    }
+
+    @Override
+    protected Long primaryKey(BaseBook record) {
+        return record.getId();
+    }
+
+    @Override
+    protected Book copy(Book entity) {
+        return (Book) entity.copy(new Book());
+    }
+
+    /**
+     * Autowired by name, leave the bean out to disable caching.
+     */
+    public void setBookEntityCache(EntityCache<Long, Book> cache) {
+        setEntityCache(cache);
+    }
+
+    /**
+     * Autowired by name, leave the bean out to disable caching.
+     */
+    public void setBookQueryCache(QueryCache cache) {
+        setQueryCache(cache);
+    }
+
+    /**
+     * Autowired by name, leave the bean out to keep the table in one database.
+     */
+    public void setBookShardRouter(ShardRouter router) {
+        setShardRouter(router);
+    }
+
+    @Override
+    public List<BookWithAuthor> selectWithAuthor(BaseCriteria criteria, FetchMode fetchMode) {
+        validateCriteria(criteria);
+        notNull(fetchMode, "fetchMode must not be null.");
+        // Authors are not sharded, they can not be joined on every shard. A long 'in' list needs the
+        // splitting or temporary table of selectList. And joined rows can not be cached, author writes
+        // do not invalidate the book query cache; where it applies, the books of BATCH mode come from
+        // it and their authors from the author entity cache.
+        if (fetchMode == FetchMode.JOIN && !isSharded() && !hasLongInList(criteria) && !isQueryCached(criteria)) {
+            return sqlSessionTemplate.selectList(namespace() + SELECT_WITH_AUTHOR_BY_CRITERIA, criteria);
+        }
+        List<Book> books = selectList(criteria);
+        Set<Long> authorIds = new LinkedHashSet<>();
+        for (Book book : books) {
+            if (book.getAuthor() != null) {
+                authorIds.add(book.getAuthor());
+            }
+        }
+        Map<Long, Author> authors = authorDao.selectMany(authorIds);
+        List<BookWithAuthor> result = new ArrayList<>(books.size());
+        for (Book book : books) {
+            BookWithAuthor bookWithAuthor = (BookWithAuthor) book.copy(new BookWithAuthor());
+            bookWithAuthor.setAuthorDetail(book.getAuthor() == null ? null : authors.get(book.getAuthor()));
+            result.add(bookWithAuthor);
+        }
+        return result;
+    }
+
+    @Override
+    public BookColumns selectColumns(BaseCriteria criteria) {
+        BookColumns.Builder builder = new BookColumns.Builder();
+        selectStream(criteria, book -> {
+            builder.add(book);
+            return true;
+        });
+        return builder.build();
+    }
+}
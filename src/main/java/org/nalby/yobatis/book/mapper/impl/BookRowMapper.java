@@ -0,0 +1,31 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.plugin.RowMapper;
+
+/**
+ * Maps the BASE_RESULT_MAP of BookMapper.xml, whose statements select its BASE_COLUMN_LIST.
+ */
+public class BookRowMapper implements RowMapper<Book> {
+
+    private static final List<String> COLUMNS = Collections.unmodifiableList(Arrays.asList("id", "name", "author"));
+
+    @Override
+    public List<String> getColumns() {
+        return COLUMNS;
+    }
+
+    @Override
+    public Book map(ResultSet resultSet) throws SQLException {
+        Book book = new Book();
+        book.setId(RowMapper.getLong(resultSet, 1));
+        book.setName(resultSet.getString(2));
+        book.setAuthor(RowMapper.getLong(resultSet, 3));
+        return book;
+    }
+}
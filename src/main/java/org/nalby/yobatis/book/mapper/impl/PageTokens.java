@@ -0,0 +1,106 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Encodes the sort key values of the last row of a page into an url-safe token and back. Values
+ * are written with a type tag instead of java serialization, so tokens coming from clients can
+ * not instantiate arbitrary classes.
+ */
+final class PageTokens {
+
+    private static final byte NULL = 0;
+
+    private static final byte LONG = 1;
+
+    private static final byte INTEGER = 2;
+
+    private static final byte STRING = 3;
+
+    private static final byte DATE = 4;
+
+    private static final byte SQL_DATE = 5;
+
+    private static final byte TIMESTAMP = 6;
+
+    private PageTokens() {
+    }
+
+    static String encode(Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(values.length);
+            for (Object value : values) {
+                if (value == null) {
+                    output.writeByte(NULL);
+                } else if (value instanceof Long) {
+                    output.writeByte(LONG);
+                    output.writeLong((Long) value);
+                } else if (value instanceof Integer) {
+                    output.writeByte(INTEGER);
+                    output.writeInt((Integer) value);
+                } else if (value instanceof String) {
+                    output.writeByte(STRING);
+                    output.writeUTF((String) value);
+                } else if (value instanceof java.sql.Timestamp) {
+                    output.writeByte(TIMESTAMP);
+                    output.writeLong(((Date) value).getTime());
+                } else if (value instanceof java.sql.Date) {
+                    output.writeByte(SQL_DATE);
+                    output.writeLong(((Date) value).getTime());
+                } else if (value instanceof Date) {
+                    output.writeByte(DATE);
+                    output.writeLong(((Date) value).getTime());
+                } else {
+                    throw new IllegalArgumentException("Unsupported sort key type:" + value.getClass());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    static Object[] decode(String token) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            Object[] values = new Object[input.readUnsignedByte()];
+            for (int i = 0; i < values.length; i++) {
+                byte type = input.readByte();
+                switch (type) {
+                case NULL:
+                    values[i] = null;
+                    break;
+                case LONG:
+                    values[i] = input.readLong();
+                    break;
+                case INTEGER:
+                    values[i] = input.readInt();
+                    break;
+                case STRING:
+                    values[i] = input.readUTF();
+                    break;
+                case DATE:
+                    values[i] = new Date(input.readLong());
+                    break;
+                case SQL_DATE:
+                    values[i] = new java.sql.Date(input.readLong());
+                    break;
+                case TIMESTAMP:
+                    values[i] = new java.sql.Timestamp(input.readLong());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Malformed page token.");
+                }
+            }
+            return values;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed page token.", e);
+        }
+    }
+}
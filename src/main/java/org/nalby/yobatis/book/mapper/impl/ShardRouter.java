@@ -0,0 +1,119 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.nalby.yobatis.book.datasource.SnowflakeIdGenerator;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+
+/**
+ * Decides the shards of the rows of a table sharded by a key, which is the 'id' primary key or
+ * another column. Rows get their ids from a {@link SnowflakeIdGenerator} on insert, each id carries
+ * the shard of its row, so rows can be found by id whatever the key. Rows sharded by id are spread
+ * over the shards in turn, the others go to the shard of the hash of their key, which must not
+ * change once inserted.
+ * <p>Rows inserted with ids not generated by the generator must carry their shard the same way.
+ */
+public class ShardRouter {
+
+    private static final String ID = "id";
+
+    private final int shardCount;
+
+    private final String shardKey;
+
+    private final SnowflakeIdGenerator idGenerator;
+
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    /**
+     * @param shardCount the number of shards, as many as the data source routes to.
+     * @param shardKey the property of the key, which must also be the name of its column.
+     * @param idGenerator generates the ids of inserted rows.
+     */
+    public ShardRouter(int shardCount, String shardKey, SnowflakeIdGenerator idGenerator) {
+        if (shardCount <= 0 || shardCount > SnowflakeIdGenerator.MAX_SHARDS) {
+            throw new IllegalArgumentException("shardCount must be in [1, " + SnowflakeIdGenerator.MAX_SHARDS + "].");
+        }
+        if (shardKey == null || idGenerator == null) {
+            throw new IllegalArgumentException("shardKey and idGenerator must not be null.");
+        }
+        this.shardCount = shardCount;
+        this.shardKey = shardKey;
+        this.idGenerator = idGenerator;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return the shard of the row of the id.
+     * @throws IllegalArgumentException if id is null or does not belong to a shard.
+     */
+    public int shardOfId(Object id) {
+        if (!(id instanceof Number)) {
+            throw new IllegalArgumentException("id must be a number.");
+        }
+        int shard = SnowflakeIdGenerator.shardOf(((Number) id).longValue());
+        if (shard >= shardCount) {
+            throw new IllegalArgumentException("id " + id + " belongs to no shard.");
+        }
+        return shard;
+    }
+
+    private int shardOfKey(Object key) {
+        if (ID.equals(shardKey)) {
+            return shardOfId(key);
+        }
+        if (key == null) {
+            throw new IllegalArgumentException(shardKey + " must not be null.");
+        }
+        return Math.floorMod(key.hashCode(), shardCount);
+    }
+
+    /**
+     * Find the shard of a record, generating its id first if it has none.
+     * @return the shard of the record.
+     */
+    public int route(Object record) {
+        MetaObject meta = SystemMetaObject.forObject(record);
+        Object id = meta.getValue(ID);
+        if (id != null) {
+            return shardOfId(id);
+        }
+        int shard = ID.equals(shardKey) ? Math.floorMod(nextShard.getAndIncrement(), shardCount)
+                : shardOfKey(meta.getValue(shardKey));
+        meta.setValue(ID, idGenerator.nextId(shard));
+        return shard;
+    }
+
+    /**
+     * @return the shards that may hold rows matching the criteria: the shards of the key values
+     * if every ORed group has an '=' or 'in' condition on the key, all shards otherwise.
+     */
+    public List<Integer> shardsOf(BaseCriteria criteria) {
+        // Read from the values, a bound criteria does not build its criterion objects for it.
+        List<Object> keys = criteria.getValuesOf(shardKey);
+        if (keys == null) {
+            return allShards();
+        }
+        Set<Integer> shards = new LinkedHashSet<>();
+        for (Object key : keys) {
+            shards.add(shardOfKey(key));
+        }
+        return new ArrayList<>(shards);
+    }
+
+    public List<Integer> allShards() {
+        List<Integer> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(i);
+        }
+        return shards;
+    }
+}
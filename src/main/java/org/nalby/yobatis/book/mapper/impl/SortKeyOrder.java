@@ -0,0 +1,80 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria.SortKey;
+
+/**
+ * Sorts entities in the order of the 'order by' clause of a criteria, the way MySQL does: NULLs come
+ * first in ascending order, and strings compare case-insensitively as the default '_ci' collations do
+ * for ASCII text.
+ */
+final class SortKeyOrder {
+
+    private SortKeyOrder() {
+    }
+
+    /**
+     * Sort the entities in place.
+     */
+    static <T> void sort(List<T> entities, List<SortKey> sortKeys) {
+        if (sortKeys.isEmpty() || entities.size() < 2) {
+            return;
+        }
+        List<Keyed<T>> keyed = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            MetaObject metaObject = SystemMetaObject.forObject(entity);
+            Object[] key = new Object[sortKeys.size()];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = metaObject.getValue(sortKeys.get(i).getField());
+            }
+            keyed.add(new Keyed<>(key, entity));
+        }
+        keyed.sort(comparator(sortKeys));
+        entities.clear();
+        for (Keyed<T> item : keyed) {
+            entities.add(item.entity);
+        }
+    }
+
+    private static <T> Comparator<Keyed<T>> comparator(List<SortKey> sortKeys) {
+        final boolean[] ascending = new boolean[sortKeys.size()];
+        for (int i = 0; i < ascending.length; i++) {
+            ascending[i] = sortKeys.get(i).isAscending();
+        }
+        return (a, b) -> {
+            for (int i = 0; i < ascending.length; i++) {
+                int result = compareValues(a.key[i], b.key[i]);
+                if (result != 0) {
+                    return ascending[i] ? result : -result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : (a == null ? -1 : 1);
+        }
+        if (a instanceof String && b instanceof String) {
+            return String.CASE_INSENSITIVE_ORDER.compare((String) a, (String) b);
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private static final class Keyed<T> {
+        private final Object[] key;
+
+        private final T entity;
+
+        private Keyed(Object[] key, T entity) {
+            this.key = key;
+            this.entity = entity;
+        }
+    }
+}
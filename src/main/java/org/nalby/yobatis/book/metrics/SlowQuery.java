@@ -0,0 +1,136 @@
+package org.nalby.yobatis.book.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A statement that ran longer than the slow query threshold. Bound values are left out, they may
+ * hold personal data; the values are only used to explain the query.
+ */
+public class SlowQuery {
+
+    private final long timestamp;
+
+    private final String statementId;
+
+    private final String sql;
+
+    private final String fingerprint;
+
+    private final long elapsedMillis;
+
+    private final long rows;
+
+    private final int parameterCount;
+
+    private final List<Integer> inListSizes;
+
+    private final Integer shard;
+
+    private final boolean streamed;
+
+    private volatile List<Map<String, Object>> explain;
+
+    private volatile String explainError;
+
+    public SlowQuery(long timestamp, String statementId, String sql, String fingerprint, long elapsedMillis,
+            long rows, int parameterCount, List<Integer> inListSizes, Integer shard, boolean streamed) {
+        this.timestamp = timestamp;
+        this.statementId = statementId;
+        this.sql = sql;
+        this.fingerprint = fingerprint;
+        this.elapsedMillis = elapsedMillis;
+        this.rows = rows;
+        this.parameterCount = parameterCount;
+        this.inListSizes = inListSizes;
+        this.shard = shard;
+        this.streamed = streamed;
+    }
+
+    /**
+     * @return when the statement finished, in epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    /**
+     * @return the rendered SQL, with '?' for the bound values.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the statement id followed by the criteria fingerprint if the statement took a
+     * criteria, the same for all queries of the same shape.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return how long the statement ran, without the consumer of the rows if it was streamed.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return rows returned or affected, -1 if the statement failed.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    /**
+     * @return the number of values of each value list of the criteria, in order.
+     */
+    public List<Integer> getInListSizes() {
+        return inListSizes;
+    }
+
+    /**
+     * @return the shard the statement ran on, null if unsharded.
+     */
+    public Integer getShard() {
+        return shard;
+    }
+
+    /**
+     * @return true if the rows were passed to a consumer as they were read.
+     */
+    public boolean isStreamed() {
+        return streamed;
+    }
+
+    /**
+     * @return the rows of EXPLAIN, null if not explained (yet).
+     */
+    public List<Map<String, Object>> getExplain() {
+        return explain;
+    }
+
+    void setExplain(List<Map<String, Object>> explain) {
+        this.explain = explain;
+    }
+
+    /**
+     * @return why EXPLAIN failed, null if it did not.
+     */
+    public String getExplainError() {
+        return explainError;
+    }
+
+    void setExplainError(String explainError) {
+        this.explainError = explainError;
+    }
+}
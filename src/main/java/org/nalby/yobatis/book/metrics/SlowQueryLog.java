@@ -0,0 +1,121 @@
+package org.nalby.yobatis.book.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Keeps the latest slow queries in a fixed-size ring and writes each of them to this class' logger
+ * as a JSON line, which logback.xml sends to an asynchronous file appender.
+ * <p>Queries are explained on a single background thread, at most once per fingerprint every
+ * {@link #EXPLAIN_INTERVAL_SECONDS}; explains beyond the small queue are dropped, so a burst of
+ * slow queries never queues up database work. An explained query is logged once its plan is in.
+ */
+public class SlowQueryLog {
+
+    private final static Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    public static final int CAPACITY = 1000;
+
+    public static final long EXPLAIN_INTERVAL_SECONDS = 60;
+
+    private static final int EXPLAIN_QUEUE_SIZE = 16;
+
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog();
+
+    private final AtomicReferenceArray<SlowQuery> ring = new AtomicReferenceArray<>(CAPACITY);
+
+    private final AtomicLong added = new AtomicLong();
+
+    private final Cache<String, Boolean> explained = Caffeine.newBuilder()
+            .maximumSize(CAPACITY)
+            .expireAfterWrite(EXPLAIN_INTERVAL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private final ThreadPoolExecutor explainer;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private SlowQueryLog() {
+        explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(EXPLAIN_QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, "slow-query-explain");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Add a slow query.
+     * @param query the query.
+     * @param explain produces the rows of EXPLAIN for the query, null if it can not be explained.
+     */
+    public void add(SlowQuery query, Callable<List<Map<String, Object>>> explain) {
+        ring.set((int) (added.getAndIncrement() % CAPACITY), query);
+        if (explain != null && explained.asMap().putIfAbsent(query.getFingerprint(), Boolean.TRUE) == null) {
+            try {
+                explainer.execute(() -> {
+                    try {
+                        query.setExplain(explain.call());
+                    } catch (Exception e) {
+                        query.setExplainError(e.toString());
+                    }
+                    write(query);
+                });
+                return;
+            } catch (RejectedExecutionException e) {
+                explained.invalidate(query.getFingerprint());
+            }
+        }
+        write(query);
+    }
+
+    private void write(SlowQuery query) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        try {
+            logger.info(mapper.writeValueAsString(query));
+        } catch (JsonProcessingException e) {
+            logger.warn("Failed to write slow query of {}.", query.getStatementId(), e);
+        }
+    }
+
+    /**
+     * @return the slow queries in the ring, latest first.
+     */
+    public List<SlowQuery> snapshot() {
+        long end = added.get();
+        List<SlowQuery> queries = new ArrayList<>(CAPACITY);
+        for (long i = end - 1; i >= Math.max(end - CAPACITY, 0); i--) {
+            SlowQuery query = ring.get((int) (i % CAPACITY));
+            if (query != null) {
+                queries.add(query);
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * @return the number of slow queries added since start.
+     */
+    public long count() {
+        return added.get();
+    }
+}
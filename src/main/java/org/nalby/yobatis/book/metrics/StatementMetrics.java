@@ -0,0 +1,72 @@
+package org.nalby.yobatis.book.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The metrics of mapper statements by statement id, recorded by
+ * {@link org.nalby.yobatis.book.plugin.StatementMetricsInterceptor}. The interceptor is created by
+ * MyBatis rather than Spring, so both share the single instance.
+ * <p>Recording does not lock: latencies go to lock-free HdrHistogram recorders and counts to
+ * {@code LongAdder}s. Only snapshots, which are rare, synchronize per statement.
+ */
+public class StatementMetrics {
+
+    private static final StatementMetrics INSTANCE = new StatementMetrics();
+
+    private final ConcurrentMap<String, StatementRecorder> recorders = new ConcurrentHashMap<>();
+
+    private StatementMetrics() {
+    }
+
+    public static StatementMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record one execution of a statement.
+     * @param statementId the id of the mapped statement.
+     * @param nanos the time the execution took.
+     * @param rows rows returned or affected.
+     * @param parameters the number of parameters bound.
+     * @param failed true if the execution threw.
+     */
+    public void record(String statementId, long nanos, long rows, long parameters, boolean failed) {
+        StatementRecorder recorder = recorders.get(statementId);
+        if (recorder == null) {
+            recorder = recorders.computeIfAbsent(statementId, StatementRecorder::new);
+        }
+        recorder.record(nanos, rows, parameters, failed);
+    }
+
+    /**
+     * @return the metrics of every statement executed since start or the last reset, by statement id.
+     */
+    public List<StatementStats> snapshot() {
+        List<StatementStats> stats = new ArrayList<>(recorders.size());
+        for (StatementRecorder recorder : recorders.values()) {
+            stats.add(recorder.snapshot());
+        }
+        stats.sort((a, b) -> a.getStatementId().compareTo(b.getStatementId()));
+        return stats;
+    }
+
+    /**
+     * @return the metrics of the statement, null if it has not been executed.
+     */
+    public StatementStats snapshot(String statementId) {
+        StatementRecorder recorder = recorders.get(statementId);
+        return recorder == null ? null : recorder.snapshot();
+    }
+
+    /**
+     * Forget everything recorded so far. Executions running meanwhile may be partly counted.
+     */
+    public void reset() {
+        for (StatementRecorder recorder : recorders.values()) {
+            recorder.reset();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.nalby.yobatis.book.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * The metrics of one statement. Writers record into an interval histogram which snapshots swap
+ * out and add to the total, so writers never wait for readers.
+ */
+class StatementRecorder {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String statementId;
+
+    private final Recorder latencies = new Recorder(SIGNIFICANT_DIGITS);
+
+    private final LongAdder executions = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder parameters = new LongAdder();
+
+    // Guarded by this.
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+
+    // Guarded by this, recycled by the recorder.
+    private Histogram interval;
+
+    StatementRecorder(String statementId) {
+        this.statementId = statementId;
+    }
+
+    void record(long nanos, long rows, long parameters, boolean failed) {
+        latencies.recordValue(Math.max(nanos, 0));
+        executions.increment();
+        if (failed) {
+            failures.increment();
+        }
+        this.rows.add(rows);
+        this.parameters.add(parameters);
+    }
+
+    synchronized StatementStats snapshot() {
+        interval = latencies.getIntervalHistogram(interval);
+        total.add(interval);
+        return new StatementStats(statementId, executions.sum(), failures.sum(), rows.sum(), parameters.sum(), total);
+    }
+
+    synchronized void reset() {
+        latencies.reset();
+        total.reset();
+        executions.reset();
+        failures.reset();
+        rows.reset();
+        parameters.reset();
+    }
+}
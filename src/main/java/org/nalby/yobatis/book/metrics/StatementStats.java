@@ -0,0 +1,100 @@
+package org.nalby.yobatis.book.metrics;
+
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * A snapshot of the metrics of one statement, latencies are in microseconds.
+ */
+public class StatementStats {
+
+    private final String statementId;
+
+    private final long executions;
+
+    private final long failures;
+
+    private final long rows;
+
+    private final long parameters;
+
+    private final double meanMicros;
+
+    private final long p50Micros;
+
+    private final long p99Micros;
+
+    private final long p999Micros;
+
+    private final long maxMicros;
+
+    StatementStats(String statementId, long executions, long failures, long rows, long parameters, Histogram latencies) {
+        this.statementId = statementId;
+        this.executions = executions;
+        this.failures = failures;
+        this.rows = rows;
+        this.parameters = parameters;
+        this.meanMicros = latencies.getMean() / 1000;
+        this.p50Micros = micros(latencies.getValueAtPercentile(50));
+        this.p99Micros = micros(latencies.getValueAtPercentile(99));
+        this.p999Micros = micros(latencies.getValueAtPercentile(99.9));
+        this.maxMicros = micros(latencies.getMaxValue());
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    public long getExecutions() {
+        return executions;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return rows returned by queries, or affected by updates.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return parameters bound over all executions.
+     */
+    public long getParameters() {
+        return parameters;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementStats[statementId=" + statementId + ", executions=" + executions + ", failures=" + failures
+                + ", rows=" + rows + ", parameters=" + parameters + ", p50Micros=" + p50Micros
+                + ", p99Micros=" + p99Micros + ", p999Micros=" + p999Micros + ", maxMicros=" + maxMicros + "]";
+    }
+}
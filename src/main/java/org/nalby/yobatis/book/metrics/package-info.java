@@ -0,0 +1,4 @@
+/**
+ * Latency and volume metrics of the mapper statements.
+ */
+package org.nalby.yobatis.book.metrics;
@@ -1,6 +1,20 @@
 package org.nalby.yobatis.book.model;
 
+import java.util.Date;
 import org.nalby.yobatis.book.model.base.BaseAuthor;
 
 public class Author extends BaseAuthor {
-}
\ No newline at end of file
+
+    /**
+     * Copy properties to the dest, with a birthday of its own: the daos hand out copies of cached
+     * authors, which must not share a mutable date with the cache.
+     */
+    @Override
+    public BaseAuthor copy(BaseAuthor dest) {
+        super.copy(dest);
+        if (getBirthday() != null) {
+            dest.setBirthday(new Date(getBirthday().getTime()));
+        }
+        return dest;
+    }
+}
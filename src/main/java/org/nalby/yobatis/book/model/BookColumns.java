@@ -0,0 +1,332 @@
+package org.nalby.yobatis.book.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+import org.nalby.yobatis.book.model.base.BaseBook;
+
+/**
+ * Books stored column by column: ids and authors in long arrays, names as UTF-8 bytes in a single
+ * arena. Rows are read by index, so scanning, filtering and grouping allocate nothing per row;
+ * only {@link #getName(int)} creates a String. Instances are immutable, built by {@link Builder}.
+ */
+public final class BookColumns {
+
+    private final int size;
+
+    private final long[] ids;
+
+    private final long[] authors;
+
+    // Rows whose author is null.
+    private final BitSet nullAuthors;
+
+    // The name of row i is nameBytes[nameOffsets[i], nameOffsets[i + 1]).
+    private final int[] nameOffsets;
+
+    private final byte[] nameBytes;
+
+    // Rows whose name is null.
+    private final BitSet nullNames;
+
+    private BookColumns(int size, long[] ids, long[] authors, BitSet nullAuthors, int[] nameOffsets,
+            byte[] nameBytes, BitSet nullNames) {
+        this.size = size;
+        this.ids = ids;
+        this.authors = authors;
+        this.nullAuthors = nullAuthors;
+        this.nameOffsets = nameOffsets;
+        this.nameBytes = nameBytes;
+        this.nullNames = nullNames;
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    /**
+     * @return the author of the row, 0 if it has none.
+     */
+    public long getAuthor(int row) {
+        checkRow(row);
+        return authors[row];
+    }
+
+    public boolean hasAuthor(int row) {
+        checkRow(row);
+        return !nullAuthors.get(row);
+    }
+
+    public boolean hasName(int row) {
+        checkRow(row);
+        return !nullNames.get(row);
+    }
+
+    /**
+     * @return the name of the row, decoded into a new String; null if it has none.
+     */
+    public String getName(int row) {
+        checkRow(row);
+        if (nullNames.get(row)) {
+            return null;
+        }
+        return new String(nameBytes, nameOffsets[row], nameOffsets[row + 1] - nameOffsets[row], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test the name of the row against a prefix without decoding it.
+     * @param prefix the UTF-8 bytes of the prefix.
+     * @return true if the row has a name starting with the prefix.
+     */
+    public boolean nameStartsWith(int row, byte[] prefix) {
+        checkRow(row);
+        if (prefix == null) {
+            throw new IllegalArgumentException("prefix must not be null.");
+        }
+        int offset = nameOffsets[row];
+        if (nullNames.get(row) || nameOffsets[row + 1] - offset < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (nameBytes[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of rows matching the predicate, which receives row indexes.
+     */
+    public int count(IntPredicate predicate) {
+        if (predicate == null) {
+            throw new IllegalArgumentException("predicate must not be null.");
+        }
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (predicate.test(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the rows matching the predicate, which receives row indexes, in their order.
+     */
+    public BookColumns filter(IntPredicate predicate) {
+        if (predicate == null) {
+            throw new IllegalArgumentException("predicate must not be null.");
+        }
+        Builder builder = new Builder();
+        for (int row = 0; row < size; row++) {
+            if (predicate.test(row)) {
+                builder.addRow(this, row);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Pass the rows having an author to {@code consumer}, one call per author in ascending order.
+     * Rows without author are left out.
+     */
+    public void groupByAuthor(GroupConsumer consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer must not be null.");
+        }
+        // Rows are numbered by group in the order authors are first seen, then groups are ranked by author.
+        AuthorTable table = new AuthorTable();
+        int[] groupOfRow = new int[size];
+        for (int row = 0; row < size; row++) {
+            groupOfRow[row] = nullAuthors.get(row) ? -1 : table.groupOf(authors[row]);
+        }
+        int groups = table.size;
+        long[] keys = Arrays.copyOf(table.authors, groups);
+        Arrays.sort(keys);
+        int[] rankOfGroup = new int[groups];
+        for (int group = 0; group < groups; group++) {
+            rankOfGroup[group] = Arrays.binarySearch(keys, table.authors[group]);
+        }
+        // A counting sort of the rows by the rank of their author.
+        int[] starts = new int[groups + 1];
+        for (int row = 0; row < size; row++) {
+            if (groupOfRow[row] >= 0) {
+                groupOfRow[row] = rankOfGroup[groupOfRow[row]];
+                starts[groupOfRow[row] + 1]++;
+            }
+        }
+        for (int rank = 0; rank < groups; rank++) {
+            starts[rank + 1] += starts[rank];
+        }
+        int[] rows = new int[starts[groups]];
+        int[] next = Arrays.copyOf(starts, groups);
+        for (int row = 0; row < size; row++) {
+            if (groupOfRow[row] >= 0) {
+                rows[next[groupOfRow[row]]++] = row;
+            }
+        }
+        for (int rank = 0; rank < groups; rank++) {
+            consumer.accept(keys[rank], rows, starts[rank], starts[rank + 1]);
+        }
+    }
+
+    /**
+     * @return an estimate of the heap retained by this object, in bytes.
+     */
+    public long getHeapBytes() {
+        // 16 bytes of header per array and object, 8 per reference.
+        return 16 + 7 * 8 + 16 + 8L * ids.length + 16 + 8L * authors.length + 16 + 4L * nameOffsets.length
+                + 16 + nameBytes.length + 2 * (16 + 16 + size / 8);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " is not in [0, " + size + ").");
+        }
+    }
+
+    /*
+     * Numbers authors from 0 in the order they are added, by open addressing on primitive arrays.
+     */
+    private static final class AuthorTable {
+
+        private long[] authors = new long[16];
+
+        private int size;
+
+        // Group + 1 by slot, 0 for an empty slot.
+        private int[] slots = new int[32];
+
+        int groupOf(long author) {
+            int mask = slots.length - 1;
+            int slot = hash(author) & mask;
+            while (slots[slot] != 0) {
+                if (authors[slots[slot] - 1] == author) {
+                    return slots[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == authors.length) {
+                authors = Arrays.copyOf(authors, size * 2);
+            }
+            authors[size++] = author;
+            slots[slot] = size;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return size - 1;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int group = 0; group < size; group++) {
+                int slot = hash(authors[group]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = group + 1;
+            }
+        }
+
+        private static int hash(long author) {
+            long hash = author * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    /**
+     * Receives the rows of an author: {@code rows[from]} to {@code rows[to - 1]}, in ascending order.
+     * The array is shared by all the groups and must not be modified.
+     */
+    @FunctionalInterface
+    public interface GroupConsumer {
+        void accept(long author, int[] rows, int from, int to);
+    }
+
+    /**
+     * Appends books as rows, the arrays grow by half when full and are trimmed by {@link #build()}.
+     */
+    public static final class Builder {
+
+        private int size;
+
+        private long[] ids = new long[16];
+
+        private long[] authors = new long[16];
+
+        private final BitSet nullAuthors = new BitSet();
+
+        private int[] nameOffsets = new int[17];
+
+        private byte[] nameBytes = new byte[256];
+
+        private final BitSet nullNames = new BitSet();
+
+        /**
+         * @param book the book to append, its id must not be null.
+         * @return this builder.
+         */
+        public Builder add(BaseBook book) {
+            if (book == null || book.getId() == null) {
+                throw new IllegalArgumentException("book and its id must not be null.");
+            }
+            String name = book.getName();
+            Long author = book.getAuthor();
+            return append(book.getId(), author == null ? 0 : author, author == null,
+                    name == null ? null : name.getBytes(StandardCharsets.UTF_8), 0, name == null ? 0 : -1);
+        }
+
+        private void addRow(BookColumns columns, int row) {
+            int offset = columns.nameOffsets[row];
+            append(columns.ids[row], columns.authors[row], columns.nullAuthors.get(row),
+                    columns.nullNames.get(row) ? null : columns.nameBytes, offset, columns.nameOffsets[row + 1] - offset);
+        }
+
+        /*
+         * A length of -1 stands for the whole array.
+         */
+        private Builder append(long id, long author, boolean nullAuthor, byte[] name, int offset, int length) {
+            if (size == ids.length) {
+                int capacity = size + (size >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                authors = Arrays.copyOf(authors, capacity);
+                nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+            }
+            ids[size] = id;
+            authors[size] = author;
+            nullAuthors.set(size, nullAuthor);
+            int start = nameOffsets[size];
+            if (name == null) {
+                nullNames.set(size);
+                length = 0;
+            } else if (length < 0) {
+                length = name.length;
+            }
+            if (start + length > nameBytes.length) {
+                nameBytes = Arrays.copyOf(nameBytes, Math.max(start + length, nameBytes.length + (nameBytes.length >> 1)));
+            }
+            if (length > 0) {
+                System.arraycopy(name, offset, nameBytes, start, length);
+            }
+            nameOffsets[++size] = start + length;
+            return this;
+        }
+
+        public BookColumns build() {
+            return new BookColumns(size, Arrays.copyOf(ids, size), Arrays.copyOf(authors, size),
+                    (BitSet) nullAuthors.clone(), Arrays.copyOf(nameOffsets, size + 1),
+                    Arrays.copyOf(nameBytes, nameOffsets[size]), (BitSet) nullNames.clone());
+        }
+    }
+}
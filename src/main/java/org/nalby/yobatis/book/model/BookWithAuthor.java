@@ -0,0 +1,22 @@
+package org.nalby.yobatis.book.model;
+
+/**
+ * A book along with its author, {@code authorDetail} is null if the book has no author or the
+ * author does not exist.
+ */
+public class BookWithAuthor extends Book {
+    private Author authorDetail;
+
+    public Author getAuthorDetail() {
+        return authorDetail;
+    }
+
+    public void setAuthorDetail(Author authorDetail) {
+        this.authorDetail = authorDetail;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[authorDetail=" + authorDetail + "]";
+    }
+}
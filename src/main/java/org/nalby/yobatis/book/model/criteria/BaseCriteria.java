@@ -3,7 +3,9 @@ package org.nalby.yobatis.book.model.criteria;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 
 public abstract class BaseCriteria {
     protected String orderByClause;
@@ -18,14 +20,42 @@ public abstract class BaseCriteria {
 
     protected Boolean forUpdate;
 
+    protected List<SortKey> sortKeys;
+
     public BaseCriteria() {
         oredCriteria = new ArrayList<Criteria>();
+        sortKeys = new ArrayList<SortKey>();
+    }
+
+    protected BaseCriteria(List<Criteria> oredCriteria, List<SortKey> sortKeys) {
+        this.oredCriteria = oredCriteria;
+        this.sortKeys = sortKeys;
     }
 
     public String getOrderByClause() {
         return orderByClause;
     }
 
+    /**
+     * The 'order by' clause with its columns qualified by a table alias, for statements selecting
+     * from the table of this criteria under an alias.
+     * @param alias the alias of the table.
+     * @return the clause, null if there is no 'order by' clause.
+     */
+    public String qualifiedOrderByClause(String alias) {
+        if (orderByClause == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (SortKey sortKey : getSortKeys()) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(alias).append('.').append(sortKey.getColumn()).append(sortKey.isAscending() ? " asc" : " desc");
+        }
+        return builder.toString();
+    }
+
     public void setDistinct(boolean distinct) {
         this.distinct = distinct;
     }
@@ -38,6 +68,13 @@ public abstract class BaseCriteria {
         return oredCriteria;
     }
 
+    /**
+     * @return true if no 'where' clause has been added to this criteria.
+     */
+    public boolean isEmpty() {
+        return getOredCriteria().isEmpty();
+    }
+
     public void or(Criteria criteria) {
         oredCriteria.add(criteria);
     }
@@ -58,6 +95,7 @@ public abstract class BaseCriteria {
 
     public void clear() {
         oredCriteria.clear();
+        sortKeys.clear();
         orderByClause = null;
         distinct = false;
         limit = null;
@@ -77,6 +115,346 @@ public abstract class BaseCriteria {
         return forUpdate;
     }
 
+    /**
+     * The fields of the 'order by' clause, in the order they were added.
+     */
+    public List<SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    /**
+     * The primary key, used as the last sort key of keyset pagination to make the order total.
+     */
+    protected abstract SortKey primaryKey();
+
+    /**
+     * Turn this criteria into a keyset (seek) page query: only rows that come after {@code lastKey}
+     * in the 'order by' order are selected, and at most {@code pageSize} of them. The primary key is
+     * appended to the 'order by' clause if it's not there, so the order is total.
+     * <p>Unlike 'offset', the database can start the scan right at the first row of the page, as long
+     * as there is an index on the sort keys.
+     * @param lastKey values of the sort keys of the last row of the previous page, in the order of
+     * {@link #getSortKeys()}; null to select the first page.
+     * @param pageSize the max number of rows to select.
+     * @throws IllegalStateException if offset is set.
+     * @throws IllegalArgumentException if lastKey does not match the sort keys.
+     */
+    public void seek(Object[] lastKey, long pageSize) {
+        if (offset != null) {
+            throw new IllegalStateException("keyset pagination can not be combined with offset.");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive.");
+        }
+        SortKey pk = primaryKey();
+        boolean sortedByPk = false;
+        for (SortKey sortKey : sortKeys) {
+            sortedByPk |= sortKey.getColumn().equals(pk.getColumn());
+        }
+        if (!sortedByPk) {
+            orderByClause = (orderByClause == null ? "" : orderByClause + ",") + pk.getColumn() + " asc";
+            sortKeys.add(pk);
+        }
+        if (lastKey != null) {
+            if (lastKey.length != sortKeys.size()) {
+                throw new IllegalArgumentException("Expected " + sortKeys.size() + " key values, but got " + lastKey.length);
+            }
+            List<Criteria> groups = new ArrayList<Criteria>();
+            for (Criteria group : oredCriteria) {
+                if (group.isValid()) {
+                    groups.add(group);
+                }
+            }
+            if (groups.isEmpty()) {
+                groups.add(createCriteriaInternal());
+            }
+            oredCriteria.clear();
+            for (Criteria group : groups) {
+                for (int i = 0; i < sortKeys.size(); i++) {
+                    addSeekGroups(group, lastKey, i);
+                }
+            }
+        }
+        limit = pageSize;
+    }
+
+    /*
+     * Add the groups matching rows that equal lastKey on the first {@code index} sort keys and come
+     * after it on the sort key at {@code index}. NULLs sort first in ascending order, as MySQL does.
+     */
+    private void addSeekGroups(Criteria group, Object[] lastKey, int index) {
+        SortKey sortKey = sortKeys.get(index);
+        String column = sortKey.getColumn();
+        Object value = lastKey[index];
+        List<String> afterConditions = new ArrayList<String>(2);
+        if (value == null) {
+            if (sortKey.isAscending()) {
+                afterConditions.add(column + " is not null");
+            }
+        } else {
+            afterConditions.add(column + (sortKey.isAscending() ? " >" : " <"));
+            if (!sortKey.isAscending()) {
+                afterConditions.add(column + " is null");
+            }
+        }
+        for (String condition : afterConditions) {
+            Criteria seekGroup = createCriteriaInternal();
+            seekGroup.getAllCriteria().addAll(group.getAllCriteria());
+            for (int i = 0; i < index; i++) {
+                if (lastKey[i] == null) {
+                    seekGroup.addCriterion(sortKeys.get(i).getColumn() + " is null");
+                } else {
+                    seekGroup.addCriterion(sortKeys.get(i).getColumn() + " =", lastKey[i], sortKeys.get(i).getField());
+                }
+            }
+            if (condition.endsWith("null")) {
+                seekGroup.addCriterion(condition);
+            } else {
+                seekGroup.addCriterion(condition, value, sortKey.getField());
+            }
+            oredCriteria.add(seekGroup);
+        }
+    }
+
+    /**
+     * The structure of the query this criteria produces, regardless of the values: criteria of the
+     * same shape render the same SQL, with the values of {@link #getBoundValues()} bound in order.
+     * @return the shape signature.
+     */
+    public String getShape() {
+        return shape(true);
+    }
+
+    /**
+     * The shape of the query without the lengths of its value lists, so that queries which differ
+     * only in how many values they look up share a fingerprint.
+     * @return the fingerprint.
+     */
+    public String getFingerprint() {
+        return shape(false);
+    }
+
+    private String shape(boolean listSizes) {
+        StringBuilder builder = new StringBuilder(64);
+        builder.append(distinct ? 'D' : '-')
+            .append(limit != null ? 'L' : '-')
+            .append(offset != null ? 'O' : '-')
+            .append(Boolean.TRUE.equals(forUpdate) ? 'U' : '-');
+        appendShapeString(builder, orderByClause);
+        for (Criteria group : getOredCriteria()) {
+            builder.append('(');
+            if (group.isValid()) {
+                for (Criterion criterion : group.getCriteria()) {
+                    appendShapeString(builder, criterion.getCondition());
+                    if (criterion.isSingleValue()) {
+                        builder.append('s');
+                    } else if (criterion.isBetweenValue()) {
+                        builder.append('b');
+                    } else if (criterion.isListValue()) {
+                        builder.append('l');
+                        if (listSizes) {
+                            builder.append(((List<?>) criterion.getValue()).size());
+                        }
+                    } else {
+                        builder.append('n');
+                    }
+                }
+            }
+            builder.append(')');
+        }
+        return builder.toString();
+    }
+
+    /*
+     * Strings are prefixed with their length, so no condition text can mimic another shape.
+     */
+    private static void appendShapeString(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append('~');
+        } else {
+            builder.append(value.length()).append(':').append(value);
+        }
+    }
+
+    /**
+     * The values of the criteria, in the order they are bound to the rendered SQL.
+     * @return the values.
+     */
+    public List<Object> getBoundValues() {
+        List<Object> values = new ArrayList<Object>();
+        for (Criteria group : getOredCriteria()) {
+            if (!group.isValid()) {
+                continue;
+            }
+            for (Criterion criterion : group.getCriteria()) {
+                if (criterion.isSingleValue()) {
+                    values.add(criterion.getValue());
+                } else if (criterion.isBetweenValue()) {
+                    values.add(criterion.getValue());
+                    values.add(criterion.getSecondValue());
+                } else if (criterion.isListValue()) {
+                    values.addAll((List<?>) criterion.getValue());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the criterion of the longest 'in' list, null if there is no 'in' list.
+     */
+    public Criterion getLargestInList() {
+        Criterion largest = null;
+        for (Criteria group : getOredCriteria()) {
+            if (!group.isValid()) {
+                continue;
+            }
+            for (Criterion criterion : group.getCriteria()) {
+                String condition = criterion.getCondition();
+                if (criterion.isListValue() && condition.endsWith(" in") && !condition.endsWith(" not in")
+                        && (largest == null || listSize(criterion) > listSize(largest))) {
+                    largest = criterion;
+                }
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * @return the size of the longest 'in' list, 0 if there is no 'in' list.
+     */
+    public int getLargestInListSize() {
+        Criterion largest = getLargestInList();
+        return largest == null ? 0 : listSize(largest);
+    }
+
+    /**
+     * The values a column must equal for rows to match: the values of the first '=' or 'in'
+     * condition on the column of each ORed group.
+     * @param column the column.
+     * @return the values, null if the criteria has no condition, or a group has no such condition,
+     * so the column may hold any value.
+     */
+    public List<Object> getValuesOf(String column) {
+        List<Object> values = null;
+        for (Criteria group : getOredCriteria()) {
+            if (!group.isValid()) {
+                continue;
+            }
+            Criterion found = null;
+            for (Criterion criterion : group.getCriteria()) {
+                String condition = criterion.getCondition();
+                if ((criterion.isSingleValue() && condition.equals(column + " ="))
+                        || (criterion.isListValue() && condition.equals(column + " in"))) {
+                    found = criterion;
+                    break;
+                }
+            }
+            if (found == null) {
+                return null;
+            }
+            if (values == null) {
+                values = new ArrayList<Object>();
+            }
+            if (found.isListValue()) {
+                values.addAll((List<?>) found.getValue());
+            } else {
+                values.add(found.getValue());
+            }
+        }
+        return values;
+    }
+
+    private static int listSize(Criterion criterion) {
+        return ((List<?>) criterion.getValue()).size();
+    }
+
+    /**
+     * Split this query into queries that each take a chunk of the 'in' list of {@code inList}, duplicated
+     * values are dropped. To let the results be merged, each query selects the first limit + offset rows
+     * of its chunk if this criteria has a limit.
+     * @param inList the criterion to split, as returned by {@link #getLargestInList()}.
+     * @param chunkSize the max number of values per chunk.
+     * @return the criteria of the chunks, this criteria is not modified.
+     */
+    public List<BaseCriteria> splitInList(Criterion inList, int chunkSize) {
+        List<Object> values = new ArrayList<Object>(new LinkedHashSet<Object>((List<?>) inList.getValue()));
+        List<BaseCriteria> chunks = new ArrayList<BaseCriteria>();
+        for (int from = 0; from < values.size(); from += chunkSize) {
+            List<Object> chunk = new ArrayList<Object>(values.subList(from, Math.min(from + chunkSize, values.size())));
+            BaseCriteria criteria = copyReplacing(inList, new Criterion(inList.getCondition(), chunk, inList.getTypeHandler()));
+            if (limit != null) {
+                criteria.limit = limit + (offset == null ? 0 : offset);
+            }
+            criteria.offset = null;
+            chunks.add(criteria);
+        }
+        return chunks;
+    }
+
+    /**
+     * Copy this query to run on one of several parts of the table, whose rows are merged later: the
+     * copy selects the first limit + offset rows of its part if this criteria has a limit.
+     * @return the copy, this criteria is not modified.
+     */
+    public BaseCriteria withoutOffset() {
+        DerivedCriteria copy = new DerivedCriteria(this);
+        copy.oredCriteria.addAll(getOredCriteria());
+        if (limit != null) {
+            copy.limit = limit + (offset == null ? 0 : offset);
+        }
+        copy.offset = null;
+        return copy;
+    }
+
+    /**
+     * Copy this query with the 'in' list of {@code inList} replaced by a condition without values,
+     * such as a sub-query.
+     * @param inList the criterion to replace.
+     * @param condition the condition to put in place.
+     * @return the copy, this criteria is not modified.
+     */
+    public BaseCriteria replaceInList(Criterion inList, String condition) {
+        return copyReplacing(inList, new Criterion(condition));
+    }
+
+    private BaseCriteria copyReplacing(Criterion target, Criterion replacement) {
+        DerivedCriteria copy = new DerivedCriteria(this);
+        for (Criteria group : getOredCriteria()) {
+            Criteria copiedGroup = createCriteriaInternal();
+            for (Criterion criterion : group.getCriteria()) {
+                copiedGroup.getAllCriteria().add(criterion == target ? replacement : criterion);
+            }
+            copy.oredCriteria.add(copiedGroup);
+        }
+        return copy;
+    }
+
+    /**
+     * Two criteria are equal if they produce the same query with the same values.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BaseCriteria that = (BaseCriteria) o;
+        return distinct == that.distinct
+                && Objects.equals(orderByClause, that.orderByClause)
+                && Objects.equals(getOredCriteria(), that.getOredCriteria())
+                && Objects.equals(limit, that.limit)
+                && Objects.equals(offset, that.offset)
+                && Objects.equals(forUpdate, that.forUpdate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(distinct, orderByClause, getOredCriteria(), limit, offset, forUpdate);
+    }
+
     protected GeneratedCriteria lastCriteria() {
         if (oredCriteria.isEmpty()) {
             oredCriteria.add(createCriteriaInternal());
@@ -104,6 +482,22 @@ public abstract class BaseCriteria {
             return criteria;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            return criteria.equals(((GeneratedCriteria) o).criteria);
+        }
+
+        @Override
+        public int hashCode() {
+            return criteria.hashCode();
+        }
+
         public void addCriterion(String condition) {
             if (condition == null) {
                 throw new IllegalArgumentException("Value for condition cannot be null");
@@ -185,6 +579,57 @@ public abstract class BaseCriteria {
         }
     }
 
+    /*
+     * A copy of a criteria, made from the outside of the subclass.
+     */
+    private static final class DerivedCriteria extends BaseCriteria {
+        private final SortKey primaryKey;
+
+        private DerivedCriteria(BaseCriteria source) {
+            this.orderByClause = source.orderByClause;
+            this.distinct = source.distinct;
+            this.limit = source.limit;
+            this.offset = source.offset;
+            this.forUpdate = source.forUpdate;
+            this.sortKeys.addAll(source.getSortKeys());
+            this.primaryKey = source.primaryKey();
+        }
+
+        @Override
+        protected SortKey primaryKey() {
+            return primaryKey;
+        }
+    }
+
+    /**
+     * A field of the 'order by' clause.
+     */
+    public static class SortKey {
+        private final String field;
+
+        private final String column;
+
+        private final boolean ascending;
+
+        public SortKey(String field, String column, boolean ascending) {
+            this.field = field;
+            this.column = column;
+            this.ascending = ascending;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public boolean isAscending() {
+            return ascending;
+        }
+    }
+
     public static class Criterion {
         private String condition;
 
@@ -234,6 +679,30 @@ public abstract class BaseCriteria {
             return typeHandler;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Criterion that = (Criterion) o;
+            return noValue == that.noValue
+                    && singleValue == that.singleValue
+                    && betweenValue == that.betweenValue
+                    && listValue == that.listValue
+                    && Objects.equals(condition, that.condition)
+                    && Objects.equals(value, that.value)
+                    && Objects.equals(secondValue, that.secondValue)
+                    && Objects.equals(typeHandler, that.typeHandler);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(condition, value, secondValue, typeHandler);
+        }
+
         protected Criterion(String condition) {
             super();
             this.condition = condition;
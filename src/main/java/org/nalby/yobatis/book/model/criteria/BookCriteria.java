@@ -5,7 +5,7 @@ import java.util.List;
 import java.util.Map;
 
 /*
- * Do NOT modify, it will be overwrote every time yobatis runs.
+ * Generated by yobatis once, maintained by hand since: do not let yobatis overwrite it.
  */
 /**
  * A BookCriteria provides methods to construct 'where', 'limit', 'offset', 'for update'
@@ -47,6 +47,7 @@ public class BookCriteria extends BaseCriteria {
                 throw new IllegalArgumentException("Unrecognizable field:" + field);
             }
             stringBuilder.append(PROPERTY_TO_COLUMN.get(field));
+            sortKeys.add(new SortKey(field, PROPERTY_TO_COLUMN.get(field), "asc".equals(order)));
             stringBuilder.append(" ");
             stringBuilder.append(order);
             stringBuilder.append(',');
@@ -91,6 +92,34 @@ public class BookCriteria extends BaseCriteria {
         return this;
     }
 
+    @Override
+    protected SortKey primaryKey() {
+        return new SortKey("id", "id", true);
+    }
+
+    /**
+     * Select the page of at most {@code pageSize} rows right after the row of {@code lastId},
+     * the 'order by' clause can only be on id, in either direction. To page through other
+     * orders, use {@code BaseDao.selectPage}.
+     * <pre>
+     * BookCriteria.nameEqualTo("x").descOrderBy("id").seekAfter(lastId, 20);
+     * -> 'where (name = "x" and id &lt; lastId) order by id desc limit 20'
+     * </pre>
+     * @param lastId the id of the last row of the previous page, null for the first page.
+     * @param pageSize the max number of rows to select.
+     * @throws IllegalStateException if ordered by fields other than id, or offset is set.
+     * @return this criteria.
+     */
+    public BookCriteria seekAfter(Long lastId, long pageSize) {
+        for (SortKey sortKey : sortKeys) {
+            if (!"id".equals(sortKey.getField())) {
+                throw new IllegalStateException("seekAfter only supports ordering by id.");
+            }
+        }
+        seek(lastId == null ? null : new Object[] {lastId}, pageSize);
+        return this;
+    }
+
     public BookCriteria or() {
         oredCriteria.add(createCriteriaInternal());
         return this;
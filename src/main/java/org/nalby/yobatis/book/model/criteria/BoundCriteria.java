@@ -0,0 +1,154 @@
+package org.nalby.yobatis.book.model.criteria;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.nalby.yobatis.book.model.criteria.CriteriaTemplate.Part;
+
+/**
+ * A {@link CriteriaTemplate} bound to values. The shape and the values are served straight from the
+ * template and the value array, the criterion objects are only built if the 'where' clause is
+ * rendered from scratch, i.e. the first time a statement sees the shape.
+ */
+final class BoundCriteria extends BaseCriteria {
+
+    private final CriteriaTemplate template;
+
+    private final Object[] values;
+
+    private volatile List<Criteria> boundCriteria;
+
+    BoundCriteria(CriteriaTemplate template, Object[] values) {
+        super(null, template.getSortKeys());
+        this.template = template;
+        this.values = values;
+        this.orderByClause = template.getOrderByClause();
+        this.distinct = template.isDistinct();
+        this.limit = template.getLimit();
+        this.offset = template.getOffset();
+        this.forUpdate = template.getForUpdate();
+    }
+
+    @Override
+    public List<Criteria> getOredCriteria() {
+        List<Criteria> result = boundCriteria;
+        if (result == null) {
+            result = new ArrayList<Criteria>(template.getGroups().size());
+            int index = 0;
+            for (List<Part> parts : template.getGroups()) {
+                Criteria group = createCriteriaInternal();
+                List<Criterion> criteria = new ArrayList<Criterion>(parts.size());
+                for (Part part : parts) {
+                    index = part.bind(values, index, criteria);
+                }
+                group.criteria = Collections.unmodifiableList(criteria);
+                result.add(group);
+            }
+            result = Collections.unmodifiableList(result);
+            boundCriteria = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return template.getGroups().isEmpty();
+    }
+
+    @Override
+    public String getShape() {
+        return template.getShape();
+    }
+
+    @Override
+    public List<Object> getBoundValues() {
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public List<Object> getValuesOf(String column) {
+        List<Object> result = null;
+        int index = 0;
+        for (List<Part> parts : template.getGroups()) {
+            boolean found = parts.isEmpty();
+            for (Part part : parts) {
+                if (!found && part.isEqualTo(column)) {
+                    if (result == null) {
+                        result = new ArrayList<Object>();
+                    }
+                    result.addAll(Arrays.asList(values).subList(index, index + part.getValueCount()));
+                    found = true;
+                }
+                index += part.getValueCount();
+            }
+            if (!found) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Criterion getLargestInList() {
+        // The criterion objects are only built for a criteria that has an 'in' list.
+        return template.getLargestInListSize() < 0 ? null : super.getLargestInList();
+    }
+
+    @Override
+    public int getLargestInListSize() {
+        return Math.max(template.getLargestInListSize(), 0);
+    }
+
+    @Override
+    protected SortKey primaryKey() {
+        return template.getPrimaryKey();
+    }
+
+    @Override
+    public void setDistinct(boolean distinct) {
+        throw immutable();
+    }
+
+    @Override
+    public void or(Criteria criteria) {
+        throw immutable();
+    }
+
+    @Override
+    @Deprecated
+    public Criteria createCriteria() {
+        throw immutable();
+    }
+
+    @Override
+    public void clear() {
+        throw immutable();
+    }
+
+    @Override
+    public void seek(Object[] lastKey, long pageSize) {
+        throw immutable();
+    }
+
+    private UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException("A bound criteria can not be modified.");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BoundCriteria that = (BoundCriteria) o;
+        return template == that.template && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(template) + Arrays.hashCode(values);
+    }
+}
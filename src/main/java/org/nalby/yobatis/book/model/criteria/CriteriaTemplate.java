@@ -0,0 +1,263 @@
+package org.nalby.yobatis.book.model.criteria;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria.Criteria;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria.Criterion;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria.SortKey;
+
+/**
+ * An immutable, thread-safe criteria with its values left as placeholders, defined once and bound
+ * to the actual values per query, instead of building a new criteria every time.
+ * <p>The template is made of an example criteria: every value of the example is a placeholder, and
+ * the values to bind take their places in order; a list value counts one placeholder per element,
+ * so the number of elements is fixed by the example.
+ * <pre>
+ * private static final CriteriaTemplate NAME_OR_AUTHOR =
+ *     CriteriaTemplate.of(BookCriteria.nameEqualTo("").or().andAuthorEqualTo(0L));
+ *
+ * bookDao.selectList(NAME_OR_AUTHOR.bind(name, authorId));
+ * -> 'where (name = name) or (author = authorId)'
+ * </pre>
+ * The bound criteria can be passed to the select, count and delete methods of BaseDao, but
+ * can not be modified.
+ */
+public final class CriteriaTemplate {
+
+    private final List<List<Part>> groups;
+
+    private final int placeholderCount;
+
+    private final String shape;
+
+    private final String orderByClause;
+
+    private final boolean distinct;
+
+    private final Long limit;
+
+    private final Long offset;
+
+    private final Boolean forUpdate;
+
+    private final List<SortKey> sortKeys;
+
+    private final SortKey primaryKey;
+
+    // The size of the longest 'in' list, -1 if there is none.
+    private final int largestInListSize;
+
+    // True if a part takes dates converted to JDBC dates or times.
+    private final boolean convertsDates;
+
+    private CriteriaTemplate(BaseCriteria example) {
+        List<List<Part>> groups = new ArrayList<List<Part>>();
+        boolean convertsDates = false;
+        for (Criteria group : example.getOredCriteria()) {
+            List<Part> parts = new ArrayList<Part>();
+            for (Criterion criterion : group.getCriteria()) {
+                Part part = new Part(criterion);
+                convertsDates |= part.dateType != null;
+                parts.add(part);
+            }
+            groups.add(Collections.unmodifiableList(parts));
+        }
+        this.groups = Collections.unmodifiableList(groups);
+        this.convertsDates = convertsDates;
+        // Bound values never change the size of a list.
+        Criterion largestInList = example.getLargestInList();
+        this.largestInListSize = largestInList == null ? -1 : ((List<?>) largestInList.getValue()).size();
+        this.placeholderCount = example.getBoundValues().size();
+        this.shape = example.getShape();
+        this.orderByClause = example.getOrderByClause();
+        this.distinct = example.isDistinct();
+        this.limit = example.getLimit();
+        this.offset = example.getOffset();
+        this.forUpdate = example.getForUpdate();
+        this.sortKeys = Collections.unmodifiableList(new ArrayList<SortKey>(example.getSortKeys()));
+        this.primaryKey = example.primaryKey();
+    }
+
+    /**
+     * Make a template of the criteria, which is not referenced by the template afterwards.
+     * @param example the criteria whose values are placeholders.
+     * @return the template.
+     * @throws IllegalArgumentException if example is null.
+     */
+    public static CriteriaTemplate of(BaseCriteria example) {
+        if (example == null) {
+            throw new IllegalArgumentException("example must not be null.");
+        }
+        return new CriteriaTemplate(example);
+    }
+
+    /**
+     * Bind values to the placeholders.
+     * @param values the values, in the order of the placeholders of the example. The array is held
+     * by the bound criteria, and must not be modified afterwards. Dates taken by conditions that
+     * convert them to JDBC dates or times, such as the 'birthday' conditions of AuthorCriteria,
+     * are converted the same way, in a copy of the array.
+     * @return the criteria to query with.
+     * @throws IllegalArgumentException if the number of values does not match, or any value is null.
+     */
+    public BaseCriteria bind(Object ... values) {
+        if (values == null || values.length != placeholderCount) {
+            throw new IllegalArgumentException("Expected " + placeholderCount + " values, but got "
+                    + (values == null ? 0 : values.length));
+        }
+        for (Object value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("Value to bind cannot be null");
+            }
+        }
+        if (convertsDates) {
+            values = values.clone();
+            int index = 0;
+            for (List<Part> parts : groups) {
+                for (Part part : parts) {
+                    index = part.convertDates(values, index);
+                }
+            }
+        }
+        return new BoundCriteria(this, values);
+    }
+
+    /**
+     * @return the number of values to bind.
+     */
+    public int getPlaceholderCount() {
+        return placeholderCount;
+    }
+
+    List<List<Part>> getGroups() {
+        return groups;
+    }
+
+    String getShape() {
+        return shape;
+    }
+
+    String getOrderByClause() {
+        return orderByClause;
+    }
+
+    boolean isDistinct() {
+        return distinct;
+    }
+
+    Long getLimit() {
+        return limit;
+    }
+
+    Long getOffset() {
+        return offset;
+    }
+
+    Boolean getForUpdate() {
+        return forUpdate;
+    }
+
+    List<SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    SortKey getPrimaryKey() {
+        return primaryKey;
+    }
+
+    int getLargestInListSize() {
+        return largestInListSize;
+    }
+
+    /*
+     * A criterion without its values.
+     */
+    static final class Part {
+        private final String condition;
+
+        private final String typeHandler;
+
+        private final boolean between;
+
+        private final boolean list;
+
+        private final int listSize;
+
+        // A no-value criterion holds nothing to bind, it is shared by all bound criteria.
+        private final Criterion noValueCriterion;
+
+        // java.sql.Date or java.sql.Time if the criteria converted the dates of the example, as
+        // addCriterionForJDBCDate and addCriterionForJDBCTime do, null otherwise.
+        private final Class<?> dateType;
+
+        private Part(Criterion criterion) {
+            this.condition = criterion.getCondition();
+            this.typeHandler = criterion.getTypeHandler();
+            this.between = criterion.isBetweenValue();
+            this.list = criterion.isListValue();
+            this.listSize = list ? ((List<?>) criterion.getValue()).size() : 0;
+            this.noValueCriterion = criterion.isNoValue() ? criterion : null;
+            Object value = list ? ((List<?>) criterion.getValue()).get(0) : criterion.getValue();
+            this.dateType = value instanceof java.sql.Date || value instanceof java.sql.Time ? value.getClass() : null;
+        }
+
+        /*
+         * Convert the dates among the values starting from {@code index} the way the example was
+         * converted, returns the index of the next part.
+         */
+        int convertDates(Object[] values, int index) {
+            int end = index + getValueCount();
+            for (int i = index; dateType != null && i < end; i++) {
+                Object value = values[i];
+                if (value instanceof java.util.Date && value.getClass() != dateType) {
+                    long time = ((java.util.Date) value).getTime();
+                    values[i] = dateType == java.sql.Date.class ? new java.sql.Date(time) : new java.sql.Time(time);
+                }
+            }
+            return end;
+        }
+
+        /*
+         * The number of values the part takes.
+         */
+        int getValueCount() {
+            if (noValueCriterion != null) {
+                return 0;
+            }
+            return between ? 2 : (list ? listSize : 1);
+        }
+
+        /*
+         * True if the part is an '=' or 'in' condition on the column.
+         */
+        boolean isEqualTo(String column) {
+            return list ? condition.equals(column + " in")
+                    : !between && noValueCriterion == null && condition.equals(column + " =");
+        }
+
+        /*
+         * Add the criterion of the values starting from {@code index}, returns the index of the next part.
+         */
+        int bind(Object[] values, int index, List<Criterion> into) {
+            if (noValueCriterion != null) {
+                into.add(noValueCriterion);
+                return index;
+            }
+            if (between) {
+                into.add(new Criterion(condition, values[index], values[index + 1], typeHandler));
+                return index + 2;
+            }
+            if (list) {
+                List<Object> list = new ArrayList<Object>(listSize);
+                for (int i = 0; i < listSize; i++) {
+                    list.add(values[index + i]);
+                }
+                into.add(new Criterion(condition, list, typeHandler));
+                return index + listSize;
+            }
+            into.add(new Criterion(condition, values[index], typeHandler));
+            return index + 1;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.nalby.yobatis.book.plugin;
+
+import java.util.Properties;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.nalby.yobatis.book.datasource.RoutingHint;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+
+/**
+ * Sets the {@link RoutingHint} of each statement: selects only read unless their criteria lock
+ * rows with 'for update'. The executor takes its connection while running the first statement, so
+ * the hint is in place when the connection is routed.
+ */
+@Intercepts({
+    @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+    @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class ReadWriteRoutingInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        Object parameter = invocation.getArgs()[1];
+        boolean read = statement.getSqlCommandType() == SqlCommandType.SELECT
+                && !(parameter instanceof BaseCriteria && Boolean.TRUE.equals(((BaseCriteria) parameter).getForUpdate()));
+        Boolean previous = RoutingHint.set(read);
+        try {
+            return invocation.proceed();
+        } finally {
+            RoutingHint.restore(previous);
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
@@ -0,0 +1,30 @@
+package org.nalby.yobatis.book.plugin;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Maps a row to an object by reading its columns by index, in place of the reflective mapping of a
+ * result map. Registered with {@link RowMappingInterceptor} under the id of the result map it replaces.
+ */
+public interface RowMapper<T> {
+
+    /**
+     * @return the labels of the columns read, column {@code i + 1} being labelled {@code getColumns().get(i)}.
+     */
+    List<String> getColumns();
+
+    /**
+     * Map the current row of {@code resultSet}.
+     */
+    T map(ResultSet resultSet) throws SQLException;
+
+    /**
+     * @return the value of a BIGINT column, null if it is SQL NULL.
+     */
+    static Long getLong(ResultSet resultSet, int column) throws SQLException {
+        long value = resultSet.getLong(column);
+        return resultSet.wasNull() ? null : value;
+    }
+}
@@ -0,0 +1,150 @@
+package org.nalby.yobatis.book.plugin;
+
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.executor.resultset.FastResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps the rows of statements using a registered result map with its {@link RowMapper}. Each property
+ * is named after a result map id, its value is the class of the row mapper, for instance
+ * {@code org.nalby.yobatis.book.mapper.impl.BookDaoImpl.BASE_RESULT_MAP}. The columns selected by a
+ * statement are checked against those of the row mapper on its first query; statements that select
+ * other columns, use row bounds or return several result sets are left to MyBatis.
+ */
+@Intercepts({
+    @Signature(type = ResultSetHandler.class, method = "handleResultSets", args = {Statement.class})
+})
+public class RowMappingInterceptor implements Interceptor {
+
+    private final static Logger logger = LoggerFactory.getLogger(RowMappingInterceptor.class);
+
+    private static final Field MAPPED_STATEMENT = handlerField("mappedStatement");
+
+    private static final Field RESULT_HANDLER = handlerField("resultHandler");
+
+    private static final Field ROW_BOUNDS = handlerField("rowBounds");
+
+    // Row mappers by result map id.
+    private final Map<String, RowMapper<?>> mappers = new HashMap<>();
+
+    // Whether a statement selects the columns its row mapper reads, by statement id.
+    private final ConcurrentMap<String, Boolean> matchingStatements = new ConcurrentHashMap<>();
+
+    private static Field handlerField(String name) {
+        try {
+            Field field = FastResultSetHandler.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("FastResultSetHandler has no " + name + ".", e);
+        }
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!(invocation.getTarget() instanceof FastResultSetHandler)) {
+            return invocation.proceed();
+        }
+        FastResultSetHandler handler = (FastResultSetHandler) invocation.getTarget();
+        MappedStatement statement = (MappedStatement) MAPPED_STATEMENT.get(handler);
+        List<ResultMap> resultMaps = statement.getResultMaps();
+        RowMapper<?> mapper = resultMaps.size() == 1 ? mappers.get(resultMaps.get(0).getId()) : null;
+        if (mapper == null || Boolean.FALSE.equals(matchingStatements.get(statement.getId()))) {
+            return invocation.proceed();
+        }
+        RowBounds rowBounds = (RowBounds) ROW_BOUNDS.get(handler);
+        if (rowBounds.getOffset() != RowBounds.NO_ROW_OFFSET || rowBounds.getLimit() != RowBounds.NO_ROW_LIMIT) {
+            return invocation.proceed();
+        }
+        ResultSet resultSet = ((Statement) invocation.getArgs()[0]).getResultSet();
+        if (resultSet == null || !matches(statement.getId(), mapper, resultSet)) {
+            return invocation.proceed();
+        }
+        try (ResultSet rows = resultSet) {
+            return map(rows, mapper, (ResultHandler) RESULT_HANDLER.get(handler));
+        }
+    }
+
+    private boolean matches(String statementId, RowMapper<?> mapper, ResultSet resultSet) throws SQLException {
+        Boolean matching = matchingStatements.get(statementId);
+        if (matching == null) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<String> columns = mapper.getColumns();
+            matching = metaData.getColumnCount() == columns.size();
+            for (int i = 0; matching && i < columns.size(); i++) {
+                matching = columns.get(i).equalsIgnoreCase(metaData.getColumnLabel(i + 1));
+            }
+            if (!matching) {
+                logger.warn("{} does not select the columns {} reads, its rows are mapped by MyBatis.",
+                        statementId, mapper.getClass().getName());
+            }
+            matchingStatements.put(statementId, matching);
+        }
+        return matching;
+    }
+
+    /*
+     * As FastResultSetHandler does, rows are either collected in the returned list or passed to
+     * the result handler until it stops the context.
+     */
+    private List<Object> map(ResultSet resultSet, RowMapper<?> mapper, ResultHandler resultHandler) throws SQLException {
+        List<Object> rows = new ArrayList<>();
+        if (resultHandler == null) {
+            while (resultSet.next()) {
+                rows.add(mapper.map(resultSet));
+            }
+            return rows;
+        }
+        DefaultResultContext context = new DefaultResultContext();
+        while (!context.isStopped() && resultSet.next()) {
+            context.nextResultObject(mapper.map(resultSet));
+            resultHandler.handleResult(context);
+        }
+        return rows;
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof ResultSetHandler ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        for (String resultMapId : properties.stringPropertyNames()) {
+            String className = properties.getProperty(resultMapId).trim();
+            try {
+                Class<?> type = Resources.classForName(className);
+                if (!RowMapper.class.isAssignableFrom(type)) {
+                    throw new IllegalArgumentException(className + " is not a RowMapper.");
+                }
+                mappers.put(resultMapId, (RowMapper<?>) type.newInstance());
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Can not create row mapper " + className + ".", e);
+            }
+        }
+    }
+}
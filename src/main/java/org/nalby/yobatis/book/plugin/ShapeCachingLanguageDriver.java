@@ -0,0 +1,33 @@
+package org.nalby.yobatis.book.plugin;
+
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.parsing.XNode;
+import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.apache.ibatis.session.Configuration;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+
+/**
+ * The XML language driver, except that dynamic statements taking a criteria parameter cache their
+ * rendered SQL by criteria shape, see {@link ShapeCachingSqlSource}.
+ */
+public class ShapeCachingLanguageDriver extends XMLLanguageDriver {
+
+    @Override
+    public SqlSource createSqlSource(Configuration configuration, XNode script, Class<?> parameterType) {
+        return wrap(configuration, super.createSqlSource(configuration, script, parameterType), parameterType);
+    }
+
+    @Override
+    public SqlSource createSqlSource(Configuration configuration, String script, Class<?> parameterType) {
+        return wrap(configuration, super.createSqlSource(configuration, script, parameterType), parameterType);
+    }
+
+    private SqlSource wrap(Configuration configuration, SqlSource source, Class<?> parameterType) {
+        if (source instanceof DynamicSqlSource && parameterType != null
+                && BaseCriteria.class.isAssignableFrom(parameterType)) {
+            return new ShapeCachingSqlSource(configuration, source);
+        }
+        return source;
+    }
+}
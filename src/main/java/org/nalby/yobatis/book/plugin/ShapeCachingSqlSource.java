@@ -0,0 +1,106 @@
+package org.nalby.yobatis.book.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * A {@link SqlSource} that renders the dynamic SQL of a criteria statement once per criteria shape
+ * (see {@link BaseCriteria#getShape()}), and binds the criteria values straight to the cached SQL
+ * on later calls, skipping the OGNL evaluation of the 'where' clause.
+ * <p>Only criteria parameters are cached, anything else is rendered by the delegate every time.
+ */
+public class ShapeCachingSqlSource implements SqlSource {
+
+    private static final String FOREACH_PREFIX = "__frch_";
+
+    private static final int MAX_SHAPES = 512;
+
+    private final Configuration configuration;
+
+    private final SqlSource delegate;
+
+    private final Cache<String, Template> templates;
+
+    public ShapeCachingSqlSource(Configuration configuration, SqlSource delegate) {
+        this.configuration = configuration;
+        this.delegate = delegate;
+        this.templates = Caffeine.newBuilder().maximumSize(MAX_SHAPES).build();
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        if (!(parameterObject instanceof BaseCriteria)) {
+            return delegate.getBoundSql(parameterObject);
+        }
+        BaseCriteria criteria = (BaseCriteria) parameterObject;
+        String shape = criteria.getShape();
+        List<Object> values = criteria.getBoundValues();
+        Template template = templates.getIfPresent(shape);
+        if (template == null) {
+            BoundSql boundSql = delegate.getBoundSql(parameterObject);
+            template = compile(boundSql, values.size());
+            if (template != null) {
+                templates.put(shape, template);
+            }
+            return boundSql;
+        }
+        BoundSql boundSql = new BoundSql(configuration, template.sql, template.parameterMappings, parameterObject);
+        for (int i = 0; i < values.size(); i++) {
+            boundSql.setAdditionalParameter(template.slotNames[i], values.get(i));
+        }
+        return boundSql;
+    }
+
+    /*
+     * Turn the rendered SQL into a template: the parameters of the foreach loops, which hold the
+     * criterion values, are replaced by slots numbered in the order of the bound values. Returns null
+     * if the statement does not bind the criteria values the way the generated 'where' clause does.
+     */
+    private Template compile(BoundSql boundSql, int valueCount) {
+        List<ParameterMapping> mappings = new ArrayList<ParameterMapping>(boundSql.getParameterMappings().size());
+        String[] slotNames = new String[valueCount];
+        int slot = 0;
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            if (!mapping.getProperty().startsWith(FOREACH_PREFIX)) {
+                mappings.add(mapping);
+                continue;
+            }
+            if (slot == valueCount) {
+                return null;
+            }
+            slotNames[slot] = "_v" + slot;
+            // Values of a slot may differ in type between calls, so the type handler is resolved per call.
+            mappings.add(new ParameterMapping.Builder(configuration, slotNames[slot], Object.class)
+                    .jdbcType(mapping.getJdbcType())
+                    .mode(mapping.getMode())
+                    .build());
+            slot++;
+        }
+        if (slot != valueCount) {
+            return null;
+        }
+        return new Template(boundSql.getSql(), Collections.unmodifiableList(mappings), slotNames);
+    }
+
+    private static class Template {
+        private final String sql;
+
+        private final List<ParameterMapping> parameterMappings;
+
+        private final String[] slotNames;
+
+        private Template(String sql, List<ParameterMapping> parameterMappings, String[] slotNames) {
+            this.sql = sql;
+            this.parameterMappings = parameterMappings;
+            this.slotNames = slotNames;
+        }
+    }
+}
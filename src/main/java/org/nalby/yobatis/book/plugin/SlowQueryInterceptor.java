@@ -0,0 +1,229 @@
+package org.nalby.yobatis.book.plugin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.nalby.yobatis.book.datasource.RoutingHint;
+import org.nalby.yobatis.book.datasource.ShardContext;
+import org.nalby.yobatis.book.mapper.impl.BaseDaoImpl;
+import org.nalby.yobatis.book.metrics.SlowQuery;
+import org.nalby.yobatis.book.metrics.SlowQueryLog;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria.Criteria;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria.Criterion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adds the statements running longer than the 'thresholdMillis' property to {@link SlowQueryLog}.
+ * Statements under the threshold only cost a clock read; the SQL of a slow statement is rendered
+ * again after it finishes, and selects are explained on the replicas of the shard they ran on.
+ * Selects reading the temporary table of a long 'in' list are not explained: the explain runs later
+ * on a connection of its own, which does not see the table.
+ * <p>A streamed query is timed without its consumer, which runs while the query reads rows.
+ */
+@Intercepts({
+    @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+    @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class SlowQueryInterceptor implements Interceptor {
+
+    private final static Logger logger = LoggerFactory.getLogger(SlowQueryInterceptor.class);
+
+    public static final long DEFAULT_THRESHOLD_MILLIS = 500;
+
+    private final SlowQueryLog slowQueryLog = SlowQueryLog.getInstance();
+
+    private long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - start - consumerNanos(invocation);
+            if (nanos >= thresholdNanos) {
+                try {
+                    record(invocation, nanos, result);
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to record slow query.", e);
+                }
+            }
+        }
+    }
+
+    private void record(Invocation invocation, long nanos, Object result) {
+        if (result != null && result.equals(BatchExecutor.BATCH_UPDATE_RETURN_VALUE)) {
+            return;
+        }
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        Object parameter = invocation.getArgs()[1];
+        BoundSql boundSql = statement.getBoundSql(parameter);
+        String fingerprint = statement.getId();
+        List<Integer> inListSizes = Collections.emptyList();
+        BaseCriteria criteria = criteriaOf(parameter);
+        if (criteria != null) {
+            fingerprint += " " + criteria.getFingerprint();
+            inListSizes = inListSizes(criteria);
+        }
+        SlowQuery query = new SlowQuery(System.currentTimeMillis(), statement.getId(),
+                boundSql.getSql().replaceAll("\\s+", " ").trim(), fingerprint, TimeUnit.NANOSECONDS.toMillis(nanos),
+                rows(invocation, result), boundSql.getParameterMappings().size(), inListSizes, ShardContext.current(),
+                streamingHandler(invocation) != null);
+        Callable<List<Map<String, Object>>> explain = null;
+        if (statement.getSqlCommandType() == SqlCommandType.SELECT && !boundSql.getSql().contains(BaseDaoImpl.IN_LIST_TABLE)) {
+            DataSource dataSource = statement.getConfiguration().getEnvironment().getDataSource();
+            // Resolved now, the parameter may change once the call returns.
+            List<Object> values = values(statement, boundSql, parameter);
+            Integer shard = query.getShard();
+            explain = () -> shard == null ? explain(dataSource, boundSql.getSql(), values)
+                    : ShardContext.on(shard, () -> explain(dataSource, boundSql.getSql(), values));
+        }
+        slowQueryLog.add(query, explain);
+    }
+
+    private BaseCriteria criteriaOf(Object parameter) {
+        if (parameter instanceof BaseCriteria) {
+            return (BaseCriteria) parameter;
+        }
+        if (parameter instanceof Map) {
+            for (Object value : ((Map<?, ?>) parameter).values()) {
+                if (value instanceof BaseCriteria) {
+                    return (BaseCriteria) value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<Integer> inListSizes(BaseCriteria criteria) {
+        List<Integer> sizes = new ArrayList<>();
+        for (Criteria group : criteria.getOredCriteria()) {
+            if (!group.isValid()) {
+                continue;
+            }
+            for (Criterion criterion : group.getCriteria()) {
+                if (criterion.isListValue()) {
+                    sizes.add(((List<?>) criterion.getValue()).size());
+                }
+            }
+        }
+        return sizes;
+    }
+
+    private long rows(Invocation invocation, Object result) {
+        if (result == null) {
+            return -1;
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        StreamingResultHandler<?> handler = streamingHandler(invocation);
+        if (handler != null) {
+            return handler.getCount();
+        }
+        return ((List<?>) result).size();
+    }
+
+    private StreamingResultHandler<?> streamingHandler(Invocation invocation) {
+        Object[] args = invocation.getArgs();
+        return args.length > 3 && args[3] instanceof StreamingResultHandler ? (StreamingResultHandler<?>) args[3] : null;
+    }
+
+    private long consumerNanos(Invocation invocation) {
+        StreamingResultHandler<?> handler = streamingHandler(invocation);
+        return handler == null ? 0 : handler.getConsumerNanos();
+    }
+
+    /*
+     * The values bound to the statement, looked up the way DefaultParameterHandler does.
+     */
+    private List<Object> values(MappedStatement statement, BoundSql boundSql, Object parameter) {
+        Configuration configuration = statement.getConfiguration();
+        TypeHandlerRegistry registry = configuration.getTypeHandlerRegistry();
+        MetaObject metaObject = parameter == null ? null : configuration.newMetaObject(parameter);
+        List<Object> values = new ArrayList<>(boundSql.getParameterMappings().size());
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String property = mapping.getProperty();
+            if (boundSql.hasAdditionalParameter(property)) {
+                values.add(boundSql.getAdditionalParameter(property));
+            } else if (parameter == null) {
+                values.add(null);
+            } else if (registry.hasTypeHandler(parameter.getClass())) {
+                values.add(parameter);
+            } else {
+                values.add(metaObject.getValue(property));
+            }
+        }
+        return values;
+    }
+
+    private List<Map<String, Object>> explain(DataSource dataSource, String sql, List<Object> values) {
+        Boolean hint = RoutingHint.set(true);
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+            for (int i = 0; i < values.size(); i++) {
+                statement.setObject(i + 1, values.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                List<Map<String, Object>> rows = new ArrayList<>();
+                while (resultSet.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        row.put(metaData.getColumnLabel(i), resultSet.getObject(i));
+                    }
+                    rows.add(row);
+                }
+                return rows;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            RoutingHint.restore(hint);
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        String threshold = properties.getProperty("thresholdMillis");
+        if (threshold != null) {
+            thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(threshold.trim()));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.nalby.yobatis.book.plugin;
+
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.nalby.yobatis.book.metrics.StatementMetrics;
+
+/**
+ * Records the latency, rows and bound parameters of every statement into {@link StatementMetrics}.
+ * The latency of a query includes mapping its rows, and streamed rows are counted as they are
+ * handled. A batched statement is recorded once per flush, with the time of the flush split
+ * evenly between the statements flushed.
+ */
+@Intercepts({
+    @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+    @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+    @Signature(type = Executor.class, method = "flushStatements", args = {}),
+    @Signature(type = Executor.class, method = "close", args = {boolean.class}),
+    @Signature(type = StatementHandler.class, method = "parameterize", args = {Statement.class})
+})
+public class StatementMetricsInterceptor implements Interceptor {
+
+    // Parameters bound by the running statement.
+    private static final ThreadLocal<long[]> PARAMETERS = ThreadLocal.withInitial(() -> new long[1]);
+
+    // Parameters bound by the batched statements not flushed yet, by statement id.
+    private static final ThreadLocal<Map<String, Long>> BATCHED = ThreadLocal.withInitial(HashMap::new);
+
+    private final StatementMetrics metrics = StatementMetrics.getInstance();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (invocation.getTarget() instanceof StatementHandler) {
+            StatementHandler handler = (StatementHandler) invocation.getTarget();
+            PARAMETERS.get()[0] += handler.getBoundSql().getParameterMappings().size();
+            return invocation.proceed();
+        }
+        switch (invocation.getMethod().getName()) {
+        case "flushStatements":
+            return flush(invocation);
+        case "close":
+            BATCHED.remove();
+            return invocation.proceed();
+        default:
+            return execute(invocation);
+        }
+    }
+
+    private Object execute(Invocation invocation) throws Throwable {
+        String statementId = ((MappedStatement) invocation.getArgs()[0]).getId();
+        long[] parameters = PARAMETERS.get();
+        parameters[0] = 0;
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } finally {
+            // Streamed rows are consumed while the statement runs.
+            Object handler = invocation.getArgs().length > 3 ? invocation.getArgs()[3] : null;
+            long nanos = System.nanoTime() - start
+                    - (handler instanceof StreamingResultHandler ? ((StreamingResultHandler<?>) handler).getConsumerNanos() : 0);
+            long bound = parameters[0];
+            parameters[0] = 0;
+            if (result == null) {
+                metrics.record(statementId, nanos, 0, bound, true);
+            } else if (result.equals(BatchExecutor.BATCH_UPDATE_RETURN_VALUE)) {
+                BATCHED.get().merge(statementId, bound, Long::sum);
+            } else {
+                metrics.record(statementId, nanos, rows(invocation, result), bound, false);
+            }
+        }
+    }
+
+    private long rows(Invocation invocation, Object result) {
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        Object handler = invocation.getArgs()[3];
+        if (handler instanceof StreamingResultHandler) {
+            return ((StreamingResultHandler<?>) handler).getCount();
+        }
+        return ((List<?>) result).size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object flush(Invocation invocation) throws Throwable {
+        Map<String, Long> batched = BATCHED.get();
+        long start = System.nanoTime();
+        List<BatchResult> results;
+        try {
+            results = (List<BatchResult>) invocation.proceed();
+        } catch (Throwable e) {
+            long nanos = (System.nanoTime() - start) / Math.max(batched.size(), 1);
+            for (Map.Entry<String, Long> entry : batched.entrySet()) {
+                metrics.record(entry.getKey(), nanos, 0, entry.getValue(), true);
+            }
+            batched.clear();
+            throw e;
+        }
+        long nanos = (System.nanoTime() - start) / Math.max(results.size(), 1);
+        for (BatchResult result : results) {
+            long rows = 0;
+            for (int count : result.getUpdateCounts()) {
+                // Drivers may answer SUCCESS_NO_INFO for rewritten batches.
+                rows += Math.max(count, 0);
+            }
+            String statementId = result.getMappedStatement().getId();
+            Long bound = batched.remove(statementId);
+            metrics.record(statementId, nanos, rows, bound == null ? 0 : bound, false);
+        }
+        batched.clear();
+        return results;
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor || target instanceof StatementHandler ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
@@ -0,0 +1,39 @@
+package org.nalby.yobatis.book.plugin;
+
+import java.sql.Statement;
+import java.util.Properties;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+
+/**
+ * Hands the JDBC statement to {@link StreamingResultHandler}s, so that a stopped stream can
+ * cancel its query.
+ */
+@Intercepts({
+    @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class})
+})
+public class StreamingQueryInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object handler = invocation.getArgs()[1];
+        if (handler instanceof StreamingResultHandler) {
+            ((StreamingResultHandler<?>) handler).bind((Statement) invocation.getArgs()[0]);
+        }
+        return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof StatementHandler ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
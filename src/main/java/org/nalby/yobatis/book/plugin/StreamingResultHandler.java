@@ -0,0 +1,81 @@
+package org.nalby.yobatis.book.plugin;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Predicate;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Passes rows to a consumer as they are read. When the consumer returns false, the handler stops
+ * reading and cancels the running statement, so the database does not keep producing rows
+ * that the driver would otherwise have to drain on close.
+ * <p>The statement is bound by {@link StreamingQueryInterceptor}, without the interceptor the
+ * handler still stops but can not cancel.
+ */
+public class StreamingResultHandler<T> implements ResultHandler {
+
+    private final static Logger logger = LoggerFactory.getLogger(StreamingResultHandler.class);
+
+    private final Predicate<? super T> consumer;
+
+    private Statement statement;
+
+    private long count;
+
+    private long consumerNanos;
+
+    private boolean cancelled;
+
+    public StreamingResultHandler(Predicate<? super T> consumer) {
+        this.consumer = consumer;
+    }
+
+    void bind(Statement statement) {
+        this.statement = statement;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void handleResult(ResultContext context) {
+        count++;
+        long start = System.nanoTime();
+        boolean more = consumer.test((T) context.getResultObject());
+        consumerNanos += System.nanoTime() - start;
+        if (more) {
+            return;
+        }
+        context.stop();
+        cancelled = true;
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                logger.warn("Failed to cancel streaming statement.", e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows passed to the consumer.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the nanoseconds spent in the consumer, which the timings of the statement leave out.
+     */
+    public long getConsumerNanos() {
+        return consumerNanos;
+    }
+
+    /**
+     * @return true if the consumer stopped the query before the last row.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
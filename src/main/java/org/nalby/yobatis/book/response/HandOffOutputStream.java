@@ -0,0 +1,216 @@
+package org.nalby.yobatis.book.response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the bytes written to it over to an executor, which writes them to the target stream, so
+ * the writing thread never waits for a slow client: a thread streaming rows out of a database
+ * connection holds it for the time of the query, not of the download.
+ * <p>Bytes not written to the target yet are held in memory up to {@code maxPendingBytes}, a write
+ * beyond that fails as if the client were gone. Once {@link #cancel()}ed, writes fail and nothing
+ * more reaches the target.
+ * <p>Writes and {@link #close()} must come from one thread at a time, {@link #cancel()} may come
+ * from any thread.
+ */
+public class HandOffOutputStream extends OutputStream {
+
+	private final static Logger logger = LoggerFactory.getLogger(HandOffOutputStream.class);
+
+	private final OutputStream target;
+
+	private final Executor executor;
+
+	private final long maxPendingBytes;
+
+	private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+	// The fields below are guarded by this.
+	private final Deque<byte[]> pending = new ArrayDeque<>();
+
+	private long pendingBytes;
+
+	private boolean draining;
+
+	private boolean closed;
+
+	private boolean cancelled;
+
+	private boolean committed;
+
+	private IOException failure;
+
+	/**
+	 * @param target the stream to write to, closed once everything is written to it.
+	 * @param executor writes to the target, one task per stream at a time.
+	 * @param maxPendingBytes the max bytes handed over but not written yet.
+	 */
+	public HandOffOutputStream(OutputStream target, Executor executor, long maxPendingBytes) {
+		if (target == null || executor == null || maxPendingBytes <= 0) {
+			throw new IllegalArgumentException("target and executor must not be null, maxPendingBytes must be positive.");
+		}
+		this.target = target;
+		this.executor = executor;
+		this.maxPendingBytes = maxPendingBytes;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (len > 0) {
+			handOver(Arrays.copyOfRange(b, off, off + len));
+		}
+	}
+
+	private synchronized void handOver(byte[] chunk) throws IOException {
+		if (cancelled) {
+			throw new IOException("The response is cancelled.");
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		if (closed) {
+			throw new IOException("The stream is closed.");
+		}
+		if (pendingBytes + chunk.length > maxPendingBytes) {
+			fail(new IOException("The client reads too slowly, more than " + maxPendingBytes + " bytes pending."));
+			throw failure;
+		}
+		pending.add(chunk);
+		pendingBytes += chunk.length;
+		drain();
+	}
+
+	/**
+	 * Does nothing, the bytes are handed over as they are written, and flushed once written.
+	 */
+	@Override
+	public void flush() {
+	}
+
+	/**
+	 * Close the target once the bytes handed over are written.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			drain();
+		}
+	}
+
+	/**
+	 * Drop the bytes not written yet, and fail further writes, as when the response is over.
+	 * @return true if no byte had reached the target, so the response can still be replaced.
+	 */
+	public synchronized boolean cancel() {
+		if (!cancelled) {
+			cancelled = true;
+			pending.clear();
+			pendingBytes = 0;
+			// Otherwise the running task completes it.
+			if (!draining) {
+				written.complete(null);
+			}
+		}
+		return !committed;
+	}
+
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return completes once the stream is closed and its bytes written, or it failed or was cancelled.
+	 */
+	public CompletableFuture<Void> whenWritten() {
+		return written;
+	}
+
+	/*
+	 * Start the task writing the pending bytes unless it is running. Guarded by this.
+	 */
+	private void drain() {
+		if (draining) {
+			return;
+		}
+		draining = true;
+		try {
+			executor.execute(this::writePending);
+		} catch (RejectedExecutionException e) {
+			draining = false;
+			fail(new IOException("No thread to write the response.", e));
+		}
+	}
+
+	/*
+	 * Drop the pending bytes and fail further writes. Guarded by this.
+	 */
+	private void fail(IOException e) {
+		failure = e;
+		pending.clear();
+		pendingBytes = 0;
+		if (!draining) {
+			written.complete(null);
+		}
+	}
+
+	private void writePending() {
+		while (true) {
+			byte[] chunk;
+			boolean last;
+			synchronized (this) {
+				chunk = cancelled || failure != null ? null : pending.poll();
+				if (chunk == null) {
+					draining = false;
+					if (!closed && !cancelled && failure == null) {
+						return;
+					}
+					break;
+				}
+				pendingBytes -= chunk.length;
+				committed = true;
+				last = pending.isEmpty();
+			}
+			try {
+				target.write(chunk);
+				if (last) {
+					target.flush();
+				}
+			} catch (IOException e) {
+				logger.info("Stopped writing response: {}.", e.getMessage());
+				synchronized (this) {
+					fail(e);
+				}
+			}
+		}
+		end();
+	}
+
+	private void end() {
+		boolean close;
+		synchronized (this) {
+			close = closed && !cancelled && failure == null;
+		}
+		if (close) {
+			try {
+				target.close();
+			} catch (IOException e) {
+				logger.info("Failed to close response: {}.", e.getMessage());
+			}
+		}
+		written.complete(null);
+	}
+}
@@ -0,0 +1,31 @@
+package org.nalby.yobatis.book.response;
+
+import org.nalby.yobatis.book.model.Author;
+import org.nalby.yobatis.book.model.Book;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writers bound to the model types, created once so the serializers are resolved once and then
+ * reused by every request. Writers are immutable and thread-safe.
+ */
+public final class JsonWriters {
+
+	static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * Writes a book per call without flushing, the caller decides when to flush.
+	 */
+	public static final ObjectWriter BOOK = MAPPER.writerFor(Book.class)
+			.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+	/**
+	 * Writes an author per call without flushing, the caller decides when to flush.
+	 */
+	public static final ObjectWriter AUTHOR = MAPPER.writerFor(Author.class)
+			.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+	private JsonWriters() {
+	}
+}
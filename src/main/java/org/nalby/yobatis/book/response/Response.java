@@ -50,4 +50,11 @@ public class Response<T> {
 		return new Response<>(500, "error", data);
 	}
 
+	/**
+	 * The request was not served in time, or the server is too busy to take it.
+	 */
+	public static <T> Response<T> unavailable(String desc) {
+		return new Response<>(503, desc, null);
+	}
+
 }
@@ -0,0 +1,101 @@
+package org.nalby.yobatis.book.response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Writes a {@link Response} whose data is a list straight to the output, one row at a time as
+ * the rows arrive, producing the same JSON as serializing the whole {@code Response<List<T>>}.
+ * <p>Nothing is written before the first row or {@link #finish()}, so a failure up to then
+ * can still be answered with a normal error response. A failure after that leaves the JSON
+ * unterminated, telling the client the data is incomplete.
+ * <p>Not thread-safe, all calls must come from one thread at a time.
+ */
+public class StreamingJsonResponse<T> implements Predicate<T> {
+
+	private final static Logger logger = LoggerFactory.getLogger(StreamingJsonResponse.class);
+
+	private final OutputStream output;
+
+	private final ObjectWriter rowWriter;
+
+	private JsonGenerator generator;
+
+	private boolean broken;
+
+	/**
+	 * @param output the response body.
+	 * @param rowWriter writes a row, such as {@link JsonWriters#BOOK}.
+	 */
+	public StreamingJsonResponse(OutputStream output, ObjectWriter rowWriter) {
+		this.output = output;
+		this.rowWriter = rowWriter;
+	}
+
+	private void start() throws IOException {
+		generator = JsonWriters.MAPPER.getFactory().createGenerator(output, JsonEncoding.UTF8);
+		generator.writeStartObject();
+		generator.writeNumberField("code", 200);
+		generator.writeStringField("description", "Ok");
+		generator.writeArrayFieldStart("data");
+	}
+
+	/**
+	 * Write a row, the first one is flushed right away to get the response going.
+	 * @return false if the client is gone, to stop producing rows.
+	 */
+	@Override
+	public boolean test(T row) {
+		if (broken) {
+			return false;
+		}
+		try {
+			boolean first = generator == null;
+			if (first) {
+				start();
+			}
+			rowWriter.writeValue(generator, row);
+			if (first) {
+				generator.flush();
+			}
+			return true;
+		} catch (IOException e) {
+			logger.info("Stopped streaming response: {}.", e.getMessage());
+			broken = true;
+			return false;
+		}
+	}
+
+	/**
+	 * @return true once a row has been written, the response can not be replaced any more.
+	 */
+	public boolean isStarted() {
+		return generator != null;
+	}
+
+	/**
+	 * End the response after the last row.
+	 */
+	public void finish() {
+		if (broken) {
+			return;
+		}
+		try {
+			if (generator == null) {
+				start();
+			}
+			generator.writeEndArray();
+			generator.writeEndObject();
+			generator.close();
+		} catch (IOException e) {
+			logger.info("Failed to finish streaming response: {}.", e.getMessage());
+			broken = true;
+		}
+	}
+}
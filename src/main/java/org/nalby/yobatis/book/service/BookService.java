@@ -1,6 +1,8 @@
 package org.nalby.yobatis.book.service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 import org.nalby.yobatis.book.model.Book;
 
@@ -12,4 +14,22 @@ public interface BookService {
 
 	List<Book> nameEqualOrAuthorIs(String name, long authorId);
 
+	/**
+	 * Same as {@link #getByName(String)}, without blocking the caller.
+	 */
+	CompletableFuture<Book> getByNameAsync(String name);
+
+	/**
+	 * Same as {@link #nameEqualOrAuthorIs(String, long)}, without blocking the caller.
+	 */
+	CompletableFuture<List<Book>> nameEqualOrAuthorIsAsync(String name, long authorId);
+
+	/**
+	 * Pass the books of {@link #nameEqualOrAuthorIs(String, long)} to {@code consumer} as they are read,
+	 * without collecting them.
+	 * @param consumer called on an executor thread, returns false to stop.
+	 * @return the number of books passed to the consumer.
+	 */
+	CompletableFuture<Long> streamNameEqualOrAuthorIs(String name, long authorId, Predicate<? super Book> consumer);
+
 }
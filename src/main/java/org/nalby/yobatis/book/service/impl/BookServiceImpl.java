@@ -1,17 +1,25 @@
 package org.nalby.yobatis.book.service.impl;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import javax.annotation.Resource;
+import org.nalby.yobatis.book.mapper.AsyncBaseDao;
 import org.nalby.yobatis.book.mapper.AuthorDao;
 import org.nalby.yobatis.book.mapper.BookDao;
 import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.base.BaseBook;
 import org.nalby.yobatis.book.model.criteria.BookCriteria;
+import org.nalby.yobatis.book.model.criteria.CriteriaTemplate;
 import org.nalby.yobatis.book.service.BookService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service("bookService")
 public class BookServiceImpl implements BookService {
+
+	private static final CriteriaTemplate NAME_OR_AUTHOR =
+			CriteriaTemplate.of(BookCriteria.nameEqualTo("").or().andAuthorEqualTo(0L));
 	
 	@Resource
 	private BookDao bookDao;
@@ -19,14 +27,17 @@ public class BookServiceImpl implements BookService {
 	@Resource
 	private AuthorDao authorDao;
 
+	@Resource
+	private AsyncBaseDao<Book, BaseBook, Long> asyncBookDao;
+
 	@Override
-	@Transactional(rollbackFor = Exception.class)
+	@Transactional(readOnly = true, rollbackFor = Exception.class)
 	public Book getById(Long id) {
 		return bookDao.selectOne(id);
 	}
 
 	@Override
-	@Transactional(rollbackFor = Exception.class)
+	@Transactional(readOnly = true, rollbackFor = Exception.class)
 	public Book getByName(String name) {
 		List<Book> books = bookDao.selectList(BookCriteria.nameEqualTo(name));
 		if (books.isEmpty()) {
@@ -36,9 +47,27 @@ public class BookServiceImpl implements BookService {
 	}
 
 	@Override
-	@Transactional(rollbackFor = Exception.class)
+	@Transactional(readOnly = true, rollbackFor = Exception.class)
 	public List<Book> nameEqualOrAuthorIs(String name, long authorId) {
-		BookCriteria criteria = BookCriteria.nameEqualTo(name).or().andAuthorEqualTo(authorId);
-		return bookDao.selectList(criteria);
+		return bookDao.selectList(NAME_OR_AUTHOR.bind(name, authorId));
+	}
+
+	/*
+	 * Not transactional, the query runs on the async dao executor, outside the calling thread.
+	 */
+	@Override
+	public CompletableFuture<Book> getByNameAsync(String name) {
+		return asyncBookDao.selectList(BookCriteria.nameEqualTo(name))
+				.thenApply(books -> books.isEmpty() ? null : books.get(0));
+	}
+
+	@Override
+	public CompletableFuture<List<Book>> nameEqualOrAuthorIsAsync(String name, long authorId) {
+		return asyncBookDao.selectList(NAME_OR_AUTHOR.bind(name, authorId));
+	}
+
+	@Override
+	public CompletableFuture<Long> streamNameEqualOrAuthorIs(String name, long authorId, Predicate<? super Book> consumer) {
+		return asyncBookDao.selectStream(NAME_OR_AUTHOR.bind(name, authorId), consumer);
 	}
 }
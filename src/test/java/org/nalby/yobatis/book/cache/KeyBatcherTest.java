@@ -0,0 +1,120 @@
+package org.nalby.yobatis.book.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class KeyBatcherTest {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+
+    private final ExecutorService loaders = Executors.newSingleThreadExecutor();
+
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+    @After
+    public void stopThreads() {
+        callers.shutdownNow();
+        loaders.shutdownNow();
+    }
+
+    @Test
+    public void keysOfAWindowAreLoadedInOneBatch() throws Exception {
+        KeyBatcher<Integer, String> batcher = new KeyBatcher<>(200_000, 100, this::load, loaders);
+        List<Future<String>> results = new ArrayList<>();
+        for (int key : new int[] {1, 2, 1, 3}) {
+            results.add(callers.submit(() -> batcher.load(key)));
+        }
+        assertEquals("1", results.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals("2", results.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals("1", results.get(2).get(5, TimeUnit.SECONDS));
+        assertEquals("3", results.get(3).get(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+        List<Integer> batch = new ArrayList<>(batches.get(0));
+        Collections.sort(batch);
+        assertEquals(Arrays.asList(1, 2, 3), batch);
+    }
+
+    @Test
+    public void fullBatchesAreLoadedBeforeTheirWindowEnds() throws Exception {
+        // A window far longer than the test, only a full batch gets loaded.
+        KeyBatcher<Integer, String> batcher = new KeyBatcher<>(TimeUnit.MINUTES.toMicros(10), 2, this::load, loaders);
+        Future<String> first = callers.submit(() -> batcher.load(1));
+        Future<String> second = callers.submit(() -> batcher.load(2));
+        assertEquals("1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("2", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+        // The loading caller ran the full batch itself.
+        assertEquals(2, batches.get(0).size());
+    }
+
+    @Test
+    public void windowsFollowOneAnother() {
+        KeyBatcher<Integer, String> batcher = new KeyBatcher<>(1000, 100, this::load, loaders);
+        assertEquals("1", batcher.load(1));
+        assertEquals("2", batcher.load(2));
+        assertEquals(Arrays.asList(Collections.singletonList(1), Collections.singletonList(2)), batches);
+    }
+
+    @Test
+    public void absentKeysLoadAsNull() {
+        KeyBatcher<Integer, String> batcher = new KeyBatcher<>(1000, 100, this::load, loaders);
+        assertNull(batcher.load(-1));
+    }
+
+    @Test
+    public void failuresReachEveryKeyOfTheBatch() throws Exception {
+        IllegalStateException failure = new IllegalStateException("failed");
+        KeyBatcher<Integer, String> batcher = new KeyBatcher<>(200_000, 100, keys -> {
+            batches.add(keys);
+            throw failure;
+        }, loaders);
+        List<Future<String>> results = new ArrayList<>();
+        for (int key : new int[] {1, 2}) {
+            results.add(callers.submit(() -> batcher.load(key)));
+        }
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                throw new AssertionError("expected the failure");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        assertEquals(1, batches.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowMustBePositive() {
+        new KeyBatcher<>(0, 100, this::load, loaders);
+    }
+
+    /*
+     * Loads the string of each positive key.
+     */
+    private Map<Integer, String> load(List<Integer> keys) {
+        batches.add(keys);
+        Map<Integer, String> values = new HashMap<>();
+        for (int key : keys) {
+            if (key > 0) {
+                values.put(key, String.valueOf(key));
+            }
+        }
+        return values;
+    }
+}
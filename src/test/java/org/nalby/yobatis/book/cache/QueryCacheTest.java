@@ -0,0 +1,76 @@
+package org.nalby.yobatis.book.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+
+public class QueryCacheTest {
+
+    private static final List<Object> KEY = Arrays.<Object>asList("selectByCriteria", "name = ", "a");
+
+    private final QueryCache cache = new QueryCache(1 << 20, 2, 60);
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @Test
+    public void resultsAreCached() {
+        List<String> rows = Collections.singletonList("row");
+        assertSame(rows, cache.get(KEY, query(rows)));
+        assertSame(rows, cache.get(KEY, query(Collections.singletonList("other"))));
+        assertEquals(1, queries.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void writesMakeResultsStale() {
+        cache.get(KEY, query(Collections.singletonList("old")));
+        cache.invalidateAll();
+        assertEquals(Collections.singletonList("new"), cache.get(KEY, query(Collections.singletonList("new"))));
+        assertEquals(1, cache.staleReads());
+        assertEquals(Collections.singletonList("new"), cache.get(KEY, query(Collections.singletonList("newer"))));
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void resultsReadDuringWritesAreNotCached() {
+        List<String> rows = Collections.singletonList("old");
+        assertSame(rows, cache.get(KEY, () -> {
+            queries.incrementAndGet();
+            // A write lands while the query runs.
+            cache.invalidateAll();
+            return rows;
+        }));
+        assertEquals(0, cache.size());
+        assertEquals(Collections.singletonList("new"), cache.get(KEY, query(Collections.singletonList("new"))));
+        assertEquals(2, queries.get());
+        assertEquals(0, cache.staleReads());
+    }
+
+    @Test
+    public void largeResultsAreNotCached() {
+        cache.get(KEY, query(Arrays.asList("a", "b", "c")));
+        cache.get(KEY, query(Arrays.asList("a", "b", "c")));
+        assertEquals(2, queries.get());
+        // Counts are one row.
+        cache.get(Arrays.<Object>asList("count"), query(3L));
+        assertEquals(Long.valueOf(3), cache.get(Arrays.<Object>asList("count"), query(4L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxRowsMustBePositive() {
+        new QueryCache(1 << 20, 0, 60);
+    }
+
+    private <R> Supplier<R> query(R result) {
+        return () -> {
+            queries.incrementAndGet();
+            return result;
+        };
+    }
+}
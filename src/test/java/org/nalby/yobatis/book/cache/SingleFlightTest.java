@@ -0,0 +1,143 @@
+package org.nalby.yobatis.book.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 4;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+
+    private final SingleFlight<String, StringBuilder> singleFlight = new SingleFlight<>();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void stopCallers() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallsShareOneLoad() throws Exception {
+        List<Future<StringBuilder>> results = callConcurrently(() -> {
+            await(release);
+            return new StringBuilder("value");
+        });
+        release.countDown();
+        List<StringBuilder> values = new ArrayList<>();
+        for (Future<StringBuilder> result : results) {
+            values.add(result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        for (StringBuilder value : values) {
+            assertEquals("value", value.toString());
+        }
+        // Waiting callers get copies, only the loading caller gets the loaded value itself.
+        for (int i = 0; i < values.size(); i++) {
+            for (int j = i + 1; j < values.size(); j++) {
+                assertNotSame(values.get(i), values.get(j));
+            }
+        }
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    public void failuresReachEveryCaller() throws Exception {
+        IllegalStateException failure = new IllegalStateException("failed");
+        List<Future<StringBuilder>> results = callConcurrently(() -> {
+            await(release);
+            throw failure;
+        });
+        release.countDown();
+        for (Future<StringBuilder> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                throw new AssertionError("expected the failure");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    public void completedLoadsAreNotReused() {
+        assertEquals("1", execute("key", () -> new StringBuilder("1")).toString());
+        assertEquals("2", execute("key", () -> new StringBuilder("2")).toString());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void nullResultsAreShared() throws Exception {
+        List<Future<StringBuilder>> results = callConcurrently(() -> {
+            await(release);
+            return null;
+        });
+        release.countDown();
+        for (Future<StringBuilder> result : results) {
+            assertNull(result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    /*
+     * Run the loader from several callers, returns once the first load runs and the other callers
+     * had time to join it.
+     */
+    private List<Future<StringBuilder>> callConcurrently(Supplier<StringBuilder> loader) throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        List<Future<StringBuilder>> results = new ArrayList<>();
+        results.add(callers.submit(() -> execute("key", () -> {
+            loading.countDown();
+            return loader.get();
+        })));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CountDownLatch calling = new CountDownLatch(CALLERS - 1);
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(callers.submit(() -> {
+                calling.countDown();
+                return execute("key", loader);
+            }));
+        }
+        assertTrue(calling.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        return results;
+    }
+
+    private StringBuilder execute(String key, Supplier<StringBuilder> loader) {
+        return singleFlight.execute(key, () -> {
+            loads.incrementAndGet();
+            return loader.get();
+        }, value -> new StringBuilder(value));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
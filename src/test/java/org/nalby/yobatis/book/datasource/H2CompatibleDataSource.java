@@ -0,0 +1,83 @@
+package org.nalby.yobatis.book.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Lets H2 run the MySQL mappers, as the one of the load test does: statements ignore the negative
+ * fetch size of the streaming statements, and the statements H2 has no MySQL form of are rewritten,
+ * the temporary tables of long 'in' lists and the approximate row count.
+ */
+public class H2CompatibleDataSource extends DelegatingDataSource {
+
+    private static final String[][] REWRITES = {
+        {"create temporary table", "create local temporary table"},
+        {"drop temporary table", "drop table"},
+        {"select table_rows from information_schema.tables", "select row_count_estimate from information_schema.tables"},
+        {"table_schema = database() and table_name = ?", "table_schema = schema() and table_name = upper(?)"},
+    };
+
+    public H2CompatibleDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return (Connection) proxy(Connection.class, super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return (Connection) proxy(Connection.class, super.getConnection(username, password));
+    }
+
+    private static Object proxy(Class<?> type, Object target) {
+        return Proxy.newProxyInstance(H2CompatibleDataSource.class.getClassLoader(), new Class<?>[] {type},
+                new Handler(target));
+    }
+
+    private static String rewrite(String sql) {
+        String rewritten = sql.replaceAll("\\s+", " ");
+        for (String[] rewrite : REWRITES) {
+            rewritten = rewritten.replace(rewrite[0], rewrite[1]);
+        }
+        return rewritten;
+    }
+
+    private static class Handler implements InvocationHandler {
+
+        private final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("setFetchSize".equals(method.getName()) && (Integer) args[0] < 0) {
+                return null;
+            }
+            if (target instanceof Connection && method.getName().startsWith("prepare") && args[0] instanceof String) {
+                args[0] = rewrite((String) args[0]);
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (target instanceof Connection && result instanceof Statement) {
+                // Keeps the most specific statement interface, PreparedStatement or CallableStatement.
+                return proxy(method.getReturnType(), result);
+            }
+            return result;
+        }
+    }
+}
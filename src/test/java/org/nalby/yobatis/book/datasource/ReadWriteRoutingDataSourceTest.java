@@ -0,0 +1,194 @@
+package org.nalby.yobatis.book.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import javax.sql.DataSource;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.nalby.yobatis.book.cache.EntityCache;
+import org.nalby.yobatis.book.cache.QueryCache;
+import org.nalby.yobatis.book.mapper.AuthorDao;
+import org.nalby.yobatis.book.mapper.BookDao;
+import org.nalby.yobatis.book.model.Author;
+import org.nalby.yobatis.book.model.criteria.AuthorCriteria;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the daos of application-context.xml against an H2 primary and replica holding different
+ * rows, see routing-test-context.xml.
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private static final long AWAIT_MILLIS = 5000;
+
+    private static GenericXmlApplicationContext context;
+
+    private static AuthorDao authorDao;
+
+    private static BookDao bookDao;
+
+    private static EntityCache<?, ?> authorEntityCache;
+
+    private static EntityCache<Long, ?> bookEntityCache;
+
+    private static QueryCache bookQueryCache;
+
+    private static JdbcTemplate primary;
+
+    private static JdbcTemplate replica;
+
+    private static TransactionTemplate readOnly;
+
+    private static TransactionTemplate readWrite;
+
+    @BeforeClass
+    public static void startContext() {
+        context = new GenericXmlApplicationContext("classpath:application-context.xml", "classpath:routing-test-context.xml");
+        authorDao = context.getBean(AuthorDao.class);
+        bookDao = context.getBean(BookDao.class);
+        authorEntityCache = context.getBean("authorEntityCache", EntityCache.class);
+        bookEntityCache = context.getBean("bookEntityCache", EntityCache.class);
+        bookQueryCache = context.getBean("bookQueryCache", QueryCache.class);
+        primary = new JdbcTemplate(context.getBean("primaryDataSource", DataSource.class));
+        replica = new JdbcTemplate(context.getBean("replicaDataSource", DataSource.class));
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterClass
+    public static void closeContext() {
+        context.close();
+    }
+
+    @Before
+    public void resetDatabases() {
+        for (JdbcTemplate database : new JdbcTemplate[] {primary, replica}) {
+            database.update("delete from author");
+            database.update("delete from book");
+            database.update("delete from replica_status");
+        }
+        authorEntityCache.invalidateAll();
+        bookEntityCache.invalidateAll();
+        bookQueryCache.invalidateAll();
+        primary.update("insert into author (id, name) values (1, 'primary')");
+        replica.update("insert into author (id, name) values (1, 'replica')");
+        awaitAuthorRead("replica");
+    }
+
+    @Test
+    public void readsOutsideTransactionsGoToTheReplica() {
+        assertEquals("replica", authorName());
+    }
+
+    @Test
+    public void readOnlyTransactionsGoToTheReplica() {
+        assertEquals("replica", readOnly.execute(status -> authorName()));
+    }
+
+    @Test
+    public void readWriteTransactionsGoToThePrimary() {
+        assertEquals("primary", readWrite.execute(status -> authorName()));
+    }
+
+    @Test
+    public void writesGoToThePrimary() {
+        Author author = new Author();
+        author.setId(2L);
+        author.setName("written");
+        authorDao.insertAll(author);
+        assertEquals(1, count(primary, "select count(*) from author where id = 2"));
+        assertEquals(0, count(replica, "select count(*) from author where id = 2"));
+    }
+
+    @Test
+    public void readsFallBackToThePrimaryWhileTheReplicaLags() {
+        replica.update("insert into replica_status values (10)");
+        awaitAuthorRead("primary");
+        replica.update("delete from replica_status");
+        awaitAuthorRead("replica");
+        // Stopped replication reports no lag at all.
+        replica.update("insert into replica_status values (null)");
+        awaitAuthorRead("primary");
+    }
+
+    @Test
+    public void cachesAreFilledFromThePrimary() {
+        insertBook(primary, 1, "new");
+        insertBook(replica, 1, "old");
+        insertBook(primary, 2, "new");
+        insertBook(replica, 2, "old");
+        assertEquals("new", bookDao.selectOne(1L).getName());
+        assertEquals("new", bookDao.selectMany(Collections.singletonList(2L)).get(2L).getName());
+        assertEquals("new", bookDao.selectList(BookCriteria.idEqualTo(1L)).get(0).getName());
+        assertEquals(2, bookDao.count(BookCriteria.nameEqualTo("new")));
+        // Served from the caches.
+        assertEquals("new", bookDao.selectOne(1L).getName());
+        assertEquals("new", bookDao.selectOne(2L).getName());
+    }
+
+    @Test
+    public void readOnlyTransactionsDoNotFillTheCaches() {
+        insertBook(primary, 1, "new");
+        insertBook(replica, 1, "old");
+        readOnly.execute(status -> {
+            assertEquals("old", bookDao.selectOne(1L).getName());
+            assertEquals("old", bookDao.selectMany(Collections.singletonList(1L)).get(1L).getName());
+            assertEquals("old", bookDao.selectList(BookCriteria.idEqualTo(1L)).get(0).getName());
+            return null;
+        });
+        assertNull(bookEntityCache.getIfPresent(1L));
+        assertEquals(0, bookQueryCache.size());
+        assertEquals("new", bookDao.selectOne(1L).getName());
+        assertEquals("new", bookDao.selectList(BookCriteria.idEqualTo(1L)).get(0).getName());
+    }
+
+    @Test
+    public void readOnlyTransactionsReadTheCaches() {
+        insertBook(primary, 1, "new");
+        insertBook(replica, 1, "old");
+        assertEquals("new", bookDao.selectOne(1L).getName());
+        assertEquals("new", readOnly.execute(status -> bookDao.selectOne(1L).getName()));
+    }
+
+    private static String authorName() {
+        return authorDao.selectList(AuthorCriteria.idEqualTo(1L)).get(0).getName();
+    }
+
+    /*
+     * Wait for the lag monitor to route the reads outside transactions to the database named.
+     */
+    private static void awaitAuthorRead(String name) {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (!name.equals(authorName()) && System.currentTimeMillis() < deadline) {
+            sleep(10);
+        }
+        assertEquals(name, authorName());
+    }
+
+    private static void insertBook(JdbcTemplate database, long id, String name) {
+        database.update("insert into book (id, name) values (?, ?)", id, name);
+    }
+
+    private static long count(JdbcTemplate database, String sql) {
+        return database.queryForObject(sql, Long.class);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
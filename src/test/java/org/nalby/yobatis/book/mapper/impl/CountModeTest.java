@@ -0,0 +1,104 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nalby.yobatis.book.mapper.CountMode;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+public class CountModeTest extends DaoTestSupport {
+
+    private static final long AWAIT_MILLIS = 5000;
+
+    @After
+    public void restoreCountMode() {
+        bookDao.setCountMode(CountMode.EXACT);
+        bookDao.setCountReconcileMillis(BaseDaoImpl.DEFAULT_COUNT_RECONCILE_MILLIS);
+    }
+
+    @Test
+    public void exactCountsSeeEveryRow() {
+        bookDao.insertAll(book(1L, "dao", 1L));
+        jdbc.update("insert into book (id, name) values (2, 'behind the dao')");
+        assertEquals(2, bookDao.countAll());
+    }
+
+    @Test
+    public void approximateCountsReadTheStatistics() {
+        bookDao.setCountMode(CountMode.APPROXIMATE);
+        assertEquals(0, bookDao.countAll());
+        for (long id = 1; id <= 3; id++) {
+            bookDao.insertAll(book(id, "counted", 1L));
+        }
+        // H2 keeps its estimate exact, and has one, so there is no fallback.
+        assertEquals(3, bookDao.countAll());
+        assertEquals(Long.valueOf(3), jdbc.queryForObject("select table_rows from information_schema.tables"
+                + " where table_schema = database() and table_name = ?", Long.class, "book"));
+    }
+
+    @Test
+    public void cachedCountsFollowTheWritesOfTheDao() {
+        bookDao.setCountMode(CountMode.CACHED);
+        bookDao.insertAll(book(1L, "dao", 1L));
+        assertEquals(1, bookDao.countAll());
+        jdbc.update("insert into book (id, name) values (2, 'behind the dao')");
+        assertEquals(1, bookDao.countAll());
+        bookDao.insertAll(book(3L, "dao", 1L));
+        assertEquals(2, bookDao.countAll());
+        bookDao.delete(3L);
+        assertEquals(1, bookDao.countAll());
+        // A new mode counts afresh.
+        bookDao.setCountMode(CountMode.CACHED);
+        assertEquals(2, bookDao.countAll());
+    }
+
+    @Test
+    public void cachedCountsOnlyTakeCommittedWrites() {
+        bookDao.setCountMode(CountMode.CACHED);
+        assertEquals(0, bookDao.countAll());
+        transactions.execute(status -> {
+            bookDao.insertAll(book(1L, "rolled back", 1L));
+            // Exact within the transaction.
+            assertEquals(1, bookDao.countAll());
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals(0, bookDao.countAll());
+        transactions.execute(status -> bookDao.insertAll(book(2L, "committed", 1L)));
+        assertEquals(1, bookDao.countAll());
+    }
+
+    @Test
+    public void cachedCountsAreReconciled() {
+        bookDao.setCountMode(CountMode.CACHED);
+        assertEquals(0, bookDao.countAll());
+        jdbc.update("insert into book (id, name) values (1, 'behind the dao')");
+        assertEquals(0, bookDao.countAll());
+        bookDao.setCountReconcileMillis(1);
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (bookDao.countAll() != 1 && System.currentTimeMillis() < deadline) {
+            sleep(10);
+        }
+        assertEquals(1, bookDao.countAll());
+    }
+
+    @Test
+    public void countsOfCriteriaAreAlwaysExact() {
+        bookDao.setCountMode(CountMode.CACHED);
+        bookDao.setCountCacheMillis(0);
+        bookDao.insertAll(book(1L, "dao", 1L));
+        assertEquals(1, bookDao.countAll());
+        jdbc.update("insert into book (id, name, author) values (2, 'behind the dao', 1)");
+        assertEquals(2, bookDao.count(BookCriteria.authorEqualTo(1L)));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
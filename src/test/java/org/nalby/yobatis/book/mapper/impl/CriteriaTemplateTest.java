@@ -0,0 +1,92 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.Test;
+import org.nalby.yobatis.book.model.Author;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.criteria.AuthorCriteria;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+import org.nalby.yobatis.book.model.criteria.CriteriaTemplate;
+
+/**
+ * A bound criteria must query exactly as the ordinary criteria with the same values does.
+ */
+public class CriteriaTemplateTest extends DaoTestSupport {
+
+    private static final CriteriaTemplate BOOKS = CriteriaTemplate.of(BookCriteria.nameEqualTo("")
+            .andAuthorIn(Arrays.asList(0L, 0L)).or().andIdBetween(0L, 0L).andNameIsNotNull()
+            .descOrderBy("id").setLimit(10L));
+
+    private static final CriteriaTemplate AUTHORS = CriteriaTemplate.of(AuthorCriteria.birthdayEqualTo(new Date())
+            .or().andBirthdayIn(Arrays.asList(new Date(), new Date())).or().andBirthdayBetween(new Date(), new Date())
+            .ascOrderBy("id"));
+
+    @Test
+    public void boundCriteriaQueryAsOrdinaryCriteria() {
+        bookDao.insertAllBatch(Arrays.asList(book(1L, "x", 1L), book(2L, "x", 2L), book(3L, "x", 3L),
+                book(4L, "y", 3L), book(5L, null, 1L), book(6L, "z", 1L)));
+        BaseCriteria bound = BOOKS.bind("x", 1L, 3L, 4L, 5L);
+        BaseCriteria ordinary = BookCriteria.nameEqualTo("x").andAuthorIn(Arrays.asList(1L, 3L))
+                .or().andIdBetween(4L, 5L).andNameIsNotNull().descOrderBy("id").setLimit(10L);
+        assertEquals(ordinary.getShape(), bound.getShape());
+        assertEquals(ordinary.getBoundValues(), bound.getBoundValues());
+        assertEquals(ordinary.getOredCriteria(), bound.getOredCriteria());
+        assertEquals(Arrays.asList(4L, 3L, 1L), ids(bookDao.selectList(bound)));
+        assertEquals(ids(bookDao.selectList(ordinary)), ids(bookDao.selectList(bound)));
+        assertEquals(bookDao.count(ordinary), bookDao.count(bound));
+        // A shape already rendered serves other values.
+        assertEquals(Arrays.asList(2L), ids(bookDao.selectList(BOOKS.bind("x", 2L, 2L, 0L, 0L))));
+    }
+
+    @Test
+    public void datesAreConvertedAsByTheCriteria() {
+        Date first = new Date(java.sql.Date.valueOf("1970-01-02").getTime());
+        Date second = new Date(java.sql.Date.valueOf("1980-01-02").getTime());
+        Date third = new Date(java.sql.Date.valueOf("1990-01-02").getTime());
+        authorDao.insertAllBatch(Arrays.asList(author(1L, "first", first), author(2L, "second", second),
+                author(3L, "third", third)));
+        BaseCriteria bound = AUTHORS.bind(first, second, second, third, third);
+        BaseCriteria ordinary = AuthorCriteria.birthdayEqualTo(first).or().andBirthdayIn(Arrays.asList(second, second))
+                .or().andBirthdayBetween(third, third).ascOrderBy("id");
+        for (Object value : bound.getBoundValues()) {
+            assertEquals(java.sql.Date.class, value.getClass());
+        }
+        assertEquals(ordinary.getBoundValues(), bound.getBoundValues());
+        assertEquals(ordinary.getOredCriteria(), bound.getOredCriteria());
+        List<Long> ids = new ArrayList<>();
+        for (Author author : authorDao.selectList(bound)) {
+            ids.add(author.getId());
+        }
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void boundGroupsCanNotBeModified() {
+        BOOKS.bind("x", 1L, 3L, 4L, 5L).getOredCriteria().get(0).getCriteria().clear();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void boundGroupsCanNotBeAddedTo() {
+        BaseCriteria bound = BOOKS.bind("x", 1L, 3L, 4L, 5L);
+        bound.getOredCriteria().get(1).addCriterion("id is null");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingValuesAreRejected() {
+        BOOKS.bind("x", 1L);
+    }
+
+    private static List<Long> ids(List<Book> books) {
+        List<Long> ids = new ArrayList<>();
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,82 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import java.util.Date;
+import javax.sql.DataSource;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.nalby.yobatis.book.model.Author;
+import org.nalby.yobatis.book.model.Book;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the daos of application-context.xml on an empty H2 database, see dao-test-context.xml. Each
+ * test class gets a context of its own, so that it may reconfigure the daos.
+ */
+public abstract class DaoTestSupport {
+
+    protected static GenericXmlApplicationContext context;
+
+    protected static BookDaoImpl bookDao;
+
+    protected static AuthorDaoImpl authorDao;
+
+    protected static JdbcTemplate jdbc;
+
+    protected static TransactionTemplate transactions;
+
+    @BeforeClass
+    public static void startContext() {
+        context = new GenericXmlApplicationContext("classpath:application-context.xml", "classpath:dao-test-context.xml");
+        bookDao = context.getBean(BookDaoImpl.class);
+        authorDao = context.getBean(AuthorDaoImpl.class);
+        jdbc = new JdbcTemplate(context.getBean("primaryDataSource", DataSource.class));
+        transactions = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @AfterClass
+    public static void closeContext() {
+        context.close();
+    }
+
+    @Before
+    public void resetDatabase() {
+        jdbc.update("delete from book");
+        jdbc.update("delete from author");
+        invalidateCaches();
+    }
+
+    /*
+     * Forget what the daos cached, as after rows were changed behind their backs.
+     */
+    protected static void invalidateCaches() {
+        bookDao.getEntityCache().invalidateAll();
+        bookDao.getQueryCache().invalidateAll();
+        authorDao.getEntityCache().invalidateAll();
+        bookDao.setCountCacheMillis(BaseDaoImpl.DEFAULT_COUNT_CACHE_MILLIS);
+        authorDao.setCountCacheMillis(BaseDaoImpl.DEFAULT_COUNT_CACHE_MILLIS);
+    }
+
+    protected static Book book(Long id, String name, Long author) {
+        Book book = new Book();
+        book.setId(id);
+        book.setName(name);
+        book.setAuthor(author);
+        return book;
+    }
+
+    protected static Author author(Long id, String name, Date birthday) {
+        Author author = new Author();
+        author.setId(id);
+        author.setName(name);
+        author.setBirthday(birthday);
+        return author;
+    }
+
+    protected static String bookName(long id) {
+        return jdbc.queryForObject("select name from book where id = ?", String.class, id);
+    }
+}
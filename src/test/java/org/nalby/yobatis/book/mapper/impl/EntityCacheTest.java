@@ -0,0 +1,106 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.Test;
+import org.nalby.yobatis.book.model.Author;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+public class EntityCacheTest extends DaoTestSupport {
+
+    @Test
+    public void selectOneReadsThroughTheCache() {
+        bookDao.insertAll(book(1L, "cached", 1L));
+        assertEquals("cached", bookDao.selectOne(1L).getName());
+        jdbc.update("update book set name = 'behind the cache' where id = 1");
+        assertEquals("cached", bookDao.selectOne(1L).getName());
+        assertNull(bookDao.selectOne(2L));
+    }
+
+    @Test
+    public void selectOneReturnsCopies() {
+        bookDao.insertAll(book(1L, "cached", 1L));
+        Book book = bookDao.selectOne(1L);
+        assertNotSame(book, bookDao.selectOne(1L));
+        book.setName("changed");
+        assertEquals("cached", bookDao.selectOne(1L).getName());
+    }
+
+    @Test
+    public void authorCopiesHaveTheirOwnBirthday() {
+        authorDao.insertAll(author(1L, "author", new Date(0)));
+        Author author = authorDao.selectOne(1L);
+        long birthday = author.getBirthday().getTime();
+        author.getBirthday().setTime(birthday + 1);
+        assertEquals(birthday, authorDao.selectOne(1L).getBirthday().getTime());
+    }
+
+    @Test
+    public void writesEvictTheirRows() {
+        bookDao.insertAll(book(1L, "cached", 1L));
+        bookDao.insertAll(book(2L, "cached", 1L));
+        bookDao.selectOne(1L);
+        bookDao.selectOne(2L);
+        bookDao.update(book(1L, "updated", null));
+        assertEquals("updated", bookDao.selectOne(1L).getName());
+        bookDao.delete(2L);
+        assertNull(bookDao.selectOne(2L));
+    }
+
+    @Test
+    public void batchAndCriteriaWritesEvictTheirRows() {
+        bookDao.insertAllBatch(Arrays.asList(book(1L, "cached", 1L), book(2L, "cached", 1L), book(3L, "cached", 2L)));
+        cacheAll();
+        bookDao.upsertBatch(Arrays.asList(book(1L, "upserted", 1L), book(2L, "upserted", 1L)));
+        assertEquals("upserted", bookDao.selectOne(1L).getName());
+        assertEquals("upserted", bookDao.selectOne(2L).getName());
+        cacheAll();
+        bookDao.upsert(book(3L, "upserted", 2L));
+        assertEquals("upserted", bookDao.selectOne(3L).getName());
+        cacheAll();
+        bookDao.update(book(null, "by author", null), BookCriteria.authorEqualTo(1L));
+        assertEquals("by author", bookDao.selectOne(1L).getName());
+        assertEquals("by author", bookDao.selectOne(2L).getName());
+        assertEquals("upserted", bookDao.selectOne(3L).getName());
+        cacheAll();
+        bookDao.updateAll(book(3L, null, 2L), BookCriteria.idEqualTo(3L));
+        assertNull(bookDao.selectOne(3L).getName());
+        cacheAll();
+        bookDao.delete(BookCriteria.authorEqualTo(1L));
+        assertNull(bookDao.selectOne(1L));
+        assertNull(bookDao.selectOne(2L));
+        assertEquals(Long.valueOf(2), bookDao.selectOne(3L).getAuthor());
+    }
+
+    @Test
+    public void missesAreNotCached() {
+        assertNull(bookDao.selectOne(1L));
+        bookDao.insertAllBatch(Collections.singletonList(book(1L, "inserted", 1L)));
+        assertEquals("inserted", bookDao.selectOne(1L).getName());
+    }
+
+    @Test
+    public void readWriteTransactionsSeeTheirOwnWrites() {
+        bookDao.insertAll(book(1L, "cached", 1L));
+        bookDao.selectOne(1L);
+        transactions.execute(status -> {
+            bookDao.update(book(1L, "uncommitted", null));
+            assertEquals("uncommitted", bookDao.selectOne(1L).getName());
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals("cached", bookDao.selectOne(1L).getName());
+    }
+
+    private static void cacheAll() {
+        for (long id = 1; id <= 3; id++) {
+            bookDao.selectOne(id);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Test;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+public class InsertBatchTest extends DaoTestSupport {
+
+    @After
+    public void restoreUpsertColumns() {
+        bookDao.setUpsertColumns(Arrays.asList("name", "author"));
+    }
+
+    @Test
+    public void insertFillsInTheGeneratedKey() {
+        Book book = book(null, "generated", 1L);
+        assertEquals(1, bookDao.insert(book));
+        assertNotNull(book.getId());
+        assertEquals("generated", bookName(book.getId()));
+    }
+
+    @Test
+    public void insertBatchCountsAndFillsInTheGeneratedKeys() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            books.add(book(null, "generated" + i, 1L));
+        }
+        assertEquals(5, bookDao.insertBatch(books));
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < books.size(); i++) {
+            Long id = books.get(i).getId();
+            assertNotNull(id);
+            ids.add(id);
+            assertEquals("generated" + i, bookName(id));
+        }
+        assertEquals(5, ids.size());
+        assertEquals(0, bookDao.insertBatch(Collections.<Book>emptyList()));
+    }
+
+    @Test
+    public void insertAllBatchCountsTheRows() {
+        assertEquals(3, bookDao.insertAllBatch(Arrays.asList(book(1L, "a", 1L), book(2L, "b", 1L), book(3L, "c", 1L))));
+        assertEquals(3, bookDao.count(BookCriteria.authorEqualTo(1L)));
+    }
+
+    @Test
+    public void upsertInsertsOrUpdates() {
+        assertEquals(1, bookDao.upsert(book(1L, "inserted", 1L)));
+        assertEquals("inserted", bookName(1));
+        assertEquals(2, bookDao.upsert(book(1L, "updated", 2L)));
+        // Unchanged, and the connection reports affected rows.
+        assertEquals(0, bookDao.upsert(book(1L, "updated", 2L)));
+        assertEquals("updated", bookName(1));
+        assertEquals(Long.valueOf(2), bookDao.selectOne(1L).getAuthor());
+    }
+
+    @Test
+    public void upsertBatchSumsTheCounts() {
+        bookDao.insertAll(book(1L, "old", 1L));
+        int rows = bookDao.upsertBatch(Arrays.asList(book(1L, "updated", 1L), book(2L, "inserted", 1L), book(3L, "inserted", 1L)));
+        // An update counts twice, as on MySQL.
+        assertEquals(4, rows);
+        assertEquals("updated", bookName(1));
+        assertEquals("inserted", bookName(2));
+        assertEquals("inserted", bookName(3));
+        assertEquals(3, bookDao.count(BookCriteria.authorEqualTo(1L)));
+    }
+
+    @Test
+    public void upsertOnlyUpdatesTheUpsertColumns() {
+        bookDao.insertAll(book(1L, "old", 1L));
+        bookDao.selectOne(1L);
+        bookDao.setUpsertColumns(Collections.singletonList("name"));
+        bookDao.upsert(book(1L, "updated", 2L));
+        Book book = bookDao.selectOne(1L);
+        assertEquals("updated", book.getName());
+        assertEquals(Long.valueOf(1), book.getAuthor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void upsertColumnsMustBeUpdatable() {
+        bookDao.setUpsertColumns(Collections.singletonList("id"));
+    }
+
+    @Test
+    public void nullFieldsAreInsertedByInsertAll() {
+        bookDao.insertAll(book(1L, null, null));
+        assertNull(bookDao.selectOne(1L).getName());
+    }
+}
@@ -0,0 +1,113 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+/**
+ * Long 'in' lists give the same rows as short ones, whether split or loaded into a temporary table.
+ */
+public class LongInListTest extends DaoTestSupport {
+
+    private static final List<Long> IDS = Arrays.asList(20L, 3L, 17L, 3L, 8L, 11L, 1L, 14L, 5L, 19L, 2L, 8L, 13L);
+
+    @Before
+    public void insertBooks() {
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            // Names repeat, so the order needs the id to be total.
+            books.add(book(id, "name" + (id % 7), id % 3));
+        }
+        bookDao.insertAllBatch(books);
+    }
+
+    @After
+    public void restoreInListSizes() {
+        bookDao.setInListSize(BaseDaoImpl.DEFAULT_IN_LIST_SIZE);
+        bookDao.setInListTableSize(BaseDaoImpl.DEFAULT_IN_LIST_TABLE_SIZE);
+    }
+
+    @Test
+    public void splitListsMergeInOrderWithLimitAndOffset() {
+        List<Long> expected = Arrays.asList(2L, 17L, 11L, 5L, 20L);
+        assertEquals(expected, ids(bookDao.selectList(ordered())));
+        bookDao.setInListSize(4);
+        invalidateCaches();
+        assertEquals(expected, ids(bookDao.selectList(ordered())));
+        assertEquals(expected, ids(transactions.execute(status -> bookDao.selectList(ordered()))));
+    }
+
+    @Test
+    public void tableListsKeepOrderLimitAndOffset() {
+        bookDao.setInListSize(4);
+        bookDao.setInListTableSize(8);
+        List<Long> expected = Arrays.asList(2L, 17L, 11L, 5L, 20L);
+        assertEquals(expected, ids(bookDao.selectList(ordered())));
+        assertEquals(expected, ids(transactions.execute(status -> bookDao.selectList(ordered()))));
+        List<Long> streamed = new ArrayList<>();
+        bookDao.selectStream(ordered(), book -> streamed.add(book.getId()));
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    public void duplicatesAndOtherGroupsAreMergedOnce() {
+        bookDao.setInListSize(3);
+        // Rows of the second group come back from every chunk.
+        BaseCriteria criteria = BookCriteria.idIn(IDS).or().andNameEqualTo("name0").ascOrderBy("id");
+        assertEquals(Arrays.asList(1L, 2L, 3L, 5L, 7L, 8L, 11L, 13L, 14L, 17L, 19L, 20L), ids(bookDao.selectList(criteria)));
+        assertEquals(12, bookDao.count(criteria));
+        bookDao.setInListTableSize(5);
+        invalidateCaches();
+        assertEquals(12, bookDao.count(criteria));
+        assertEquals(12, bookDao.selectList(criteria).size());
+    }
+
+    @Test
+    public void countsOfSplitListsAddUp() {
+        bookDao.setInListSize(2);
+        assertEquals(11, bookDao.count(BookCriteria.idIn(IDS)));
+        assertEquals(7, bookDao.count(BookCriteria.idIn(IDS).andAuthorEqualTo(2L)));
+    }
+
+    @Test
+    public void selectOneTakesTheTable() {
+        bookDao.setInListSize(2);
+        bookDao.setInListTableSize(4);
+        assertEquals(Long.valueOf(17), bookDao.selectOne(BookCriteria.idIn(IDS).andNameEqualTo("name3").andAuthorEqualTo(2L)).getId());
+    }
+
+    @Test
+    public void notInListsAreNotSplit() {
+        bookDao.setInListSize(2);
+        assertEquals(Arrays.asList(4L, 6L, 7L, 9L, 10L, 12L, 15L, 16L, 18L),
+                ids(bookDao.selectList(BookCriteria.idNotIn(IDS).ascOrderBy("id"))));
+    }
+
+    @Test
+    public void emptyResultsBeyondTheOffset() {
+        bookDao.setInListSize(4);
+        assertEquals(Collections.<Long>emptyList(),
+                ids(bookDao.selectList(BookCriteria.idIn(IDS).ascOrderBy("id").setOffset(50L).setLimit(5L))));
+    }
+
+    private static BaseCriteria ordered() {
+        return BookCriteria.idIn(IDS).descOrderBy("author").ascOrderBy("name").ascOrderBy("id").setOffset(2L).setLimit(5L);
+    }
+
+    private static List<Long> ids(List<Book> books) {
+        List<Long> ids = new ArrayList<>();
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+}
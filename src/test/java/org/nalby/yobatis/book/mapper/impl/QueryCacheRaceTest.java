@@ -0,0 +1,63 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+/**
+ * Results read while a write is under way hold the rows from before it, they must not outlive its
+ * commit in the query cache.
+ */
+public class QueryCacheRaceTest extends DaoTestSupport {
+
+    private static final ExecutorService reader = Executors.newSingleThreadExecutor();
+
+    @AfterClass
+    public static void stopReader() {
+        reader.shutdownNow();
+    }
+
+    @Test
+    public void readsBeforeTheCommitAreStaleAfterIt() {
+        bookDao.insertAll(book(1L, "old", 1L));
+        transactions.execute(status -> {
+            bookDao.update(book(1L, "new", null));
+            // Outside the transaction, the row is not committed yet.
+            assertEquals("old", readName());
+            return null;
+        });
+        assertEquals("new", bookDao.selectList(BookCriteria.idEqualTo(1L)).get(0).getName());
+    }
+
+    @Test
+    public void readsBeforeTheRollbackStayValid() {
+        bookDao.insertAll(book(1L, "old", 1L));
+        transactions.execute(status -> {
+            bookDao.update(book(1L, "new", null));
+            assertEquals("old", readName());
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals("old", bookDao.selectList(BookCriteria.idEqualTo(1L)).get(0).getName());
+    }
+
+    @Test
+    public void writesOutsideTransactionsInvalidateAtOnce() {
+        bookDao.insertAll(book(1L, "old", 1L));
+        assertEquals("old", bookDao.selectList(BookCriteria.idEqualTo(1L)).get(0).getName());
+        bookDao.update(book(1L, "new", null));
+        assertEquals("new", bookDao.selectList(BookCriteria.idEqualTo(1L)).get(0).getName());
+    }
+
+    private static String readName() {
+        try {
+            return reader.submit(() -> bookDao.selectList(BookCriteria.idEqualTo(1L)).get(0).getName()).get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+/**
+ * Concurrent reads sharing queries through the dao, see SingleFlightTest and KeyBatcherTest for
+ * how they are shared.
+ */
+public class ReadCoalescingTest extends DaoTestSupport {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(6);
+
+    @Before
+    public void insertBooks() {
+        bookDao.insertAllBatch(Arrays.asList(book(1L, "one", 1L), book(2L, "two", 1L), book(3L, "three", 2L)));
+    }
+
+    @After
+    public void stopBatching() {
+        bookDao.setBatchWindowMicros(0);
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void batchedSelectOnesGetTheirOwnRows() throws Exception {
+        bookDao.setBatchWindowMicros(50_000);
+        List<Future<Book>> results = new ArrayList<>();
+        for (long id : new long[] {1, 2, 3, 42, 1, 2}) {
+            results.add(callers.submit(() -> bookDao.selectOne(id)));
+        }
+        List<String> names = new ArrayList<>();
+        for (Future<Book> result : results) {
+            Book book = result.get(5, TimeUnit.SECONDS);
+            names.add(book == null ? null : book.getName());
+        }
+        assertEquals(Arrays.asList("one", "two", "three", null, "one", "two"), names);
+        assertNotSame(results.get(0).get(), results.get(4).get());
+        // Batches fill the entity cache.
+        jdbc.update("update book set name = 'behind the cache' where id = 1");
+        assertEquals("one", bookDao.selectOne(1L).getName());
+    }
+
+    @Test
+    public void transactionsDoNotBatch() {
+        bookDao.setBatchWindowMicros(TimeUnit.MINUTES.toMicros(10));
+        // A batched read would wait for the window.
+        assertEquals("one", transactions.execute(status -> bookDao.selectOne(1L)).getName());
+        assertNull(transactions.execute(status -> bookDao.selectOne(42L)));
+    }
+
+    @Test
+    public void coalescedListsAreCopies() throws Exception {
+        Callable<List<Book>> select = () -> bookDao.selectList(BookCriteria.authorEqualTo(1L).ascOrderBy("id"));
+        List<Future<List<Book>>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(callers.submit(select));
+        }
+        List<Book> first = results.get(0).get(5, TimeUnit.SECONDS);
+        first.get(0).setName("changed");
+        for (Future<List<Book>> result : results.subList(1, results.size())) {
+            List<Book> books = result.get(5, TimeUnit.SECONDS);
+            assertEquals(2, books.size());
+            assertEquals("one", books.get(0).getName());
+        }
+    }
+}
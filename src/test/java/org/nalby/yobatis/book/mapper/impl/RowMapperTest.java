@@ -0,0 +1,102 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.nalby.yobatis.book.model.Author;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.criteria.AuthorCriteria;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+/**
+ * The row mappers give the objects the result maps of MyBatis give, which still map the statements
+ * with row bounds.
+ */
+public class RowMapperTest extends DaoTestSupport {
+
+    private static final RowBounds ALL_ROWS = new RowBounds(0, 1000);
+
+    private static SqlSessionTemplate sqlSession;
+
+    @BeforeClass
+    public static void getSqlSession() {
+        sqlSession = context.getBean(SqlSessionTemplate.class);
+    }
+
+    @Test
+    public void booksAreMappedAsByMyBatis() {
+        bookDao.insertAllBatch(Arrays.asList(book(1L, "book", 1L), book(2L, null, 1L), book(3L, "no author", null)));
+        BookCriteria criteria = BookCriteria.idIn(Arrays.asList(1L, 2L, 3L)).ascOrderBy("id");
+        String statement = BookDaoImpl.class.getName() + ".selectByCriteria";
+        List<String> mapped = books(sqlSession.selectList(statement, criteria));
+        assertEquals(Arrays.asList("1 book 1", "2 null 1", "3 no author null"), mapped);
+        assertEquals(mapped, books(sqlSession.selectList(statement, criteria, ALL_ROWS)));
+    }
+
+    @Test
+    public void authorsAreMappedAsByMyBatis() {
+        authorDao.insertAllBatch(Arrays.asList(author(1L, "born", java.sql.Date.valueOf("1970-01-02")), author(2L, null, null)));
+        AuthorCriteria criteria = AuthorCriteria.idIn(Arrays.asList(1L, 2L)).ascOrderBy("id");
+        String statement = AuthorDaoImpl.class.getName() + ".selectByCriteria";
+        List<Author> mapped = sqlSession.selectList(statement, criteria);
+        List<Author> byMyBatis = sqlSession.selectList(statement, criteria, ALL_ROWS);
+        assertEquals(authors(byMyBatis), authors(mapped));
+        assertEquals(java.sql.Date.valueOf("1970-01-02").getTime(), mapped.get(0).getBirthday().getTime());
+        assertSame(Date.class, mapped.get(0).getBirthday().getClass());
+        assertSame(byMyBatis.get(0).getBirthday().getClass(), mapped.get(0).getBirthday().getClass());
+        assertNull(mapped.get(1).getName());
+        assertNull(mapped.get(1).getBirthday());
+    }
+
+    @Test
+    public void streamsStopWhenTheConsumerDoes() {
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            books.add(book(id, "streamed", id % 2 == 0 ? null : id));
+        }
+        bookDao.insertAllBatch(books);
+        List<String> streamed = new ArrayList<>();
+        bookDao.selectStream(BookCriteria.nameEqualTo("streamed").ascOrderBy("id"), book -> {
+            streamed.add(book.getId() + " " + book.getName() + " " + book.getAuthor());
+            return streamed.size() < 3;
+        });
+        assertEquals(Arrays.asList("1 streamed 1", "2 streamed null", "3 streamed 3"), streamed);
+    }
+
+    @Test
+    public void selectByPkAndPksAreMapped() {
+        bookDao.insertAllBatch(Arrays.asList(book(1L, "one", null), book(2L, "two", 2L)));
+        assertEquals("1 one null", book(bookDao.selectOne(1L)));
+        assertEquals("2 two 2", book(bookDao.selectMany(Arrays.asList(1L, 2L)).get(2L)));
+    }
+
+    private static List<String> books(List<Book> books) {
+        List<String> strings = new ArrayList<>();
+        for (Book book : books) {
+            strings.add(book(book));
+        }
+        return strings;
+    }
+
+    private static String book(Book book) {
+        return book.getId() + " " + book.getName() + " " + book.getAuthor();
+    }
+
+    private static List<String> authors(List<Author> authors) {
+        List<String> strings = new ArrayList<>();
+        for (Author author : authors) {
+            strings.add(author.getId() + " " + author.getName() + " "
+                    + (author.getBirthday() == null ? null : author.getBirthday().getTime()));
+        }
+        return strings;
+    }
+}
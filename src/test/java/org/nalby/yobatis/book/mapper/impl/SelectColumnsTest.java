@@ -0,0 +1,48 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.nalby.yobatis.book.model.BookColumns;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+public class SelectColumnsTest extends DaoTestSupport {
+
+    @Test
+    public void columnsHoldTheSelectedRows() {
+        bookDao.insertAllBatch(Arrays.asList(book(1L, "abc", 2L), book(2L, null, 1L), book(3L, "ab", null),
+                book(4L, "b", 2L), book(5L, "abd", 1L)));
+        BookColumns columns = bookDao.selectColumns(BookCriteria.idIn(Arrays.asList(1L, 2L, 3L, 5L)).ascOrderBy("id"));
+        assertEquals(4, columns.size());
+        assertEquals(Arrays.asList("abc", null, "ab", "abd"), names(columns));
+        byte[] prefix = "ab".getBytes(StandardCharsets.UTF_8);
+        BookColumns ab = columns.filter(row -> columns.nameStartsWith(row, prefix));
+        assertEquals(Arrays.asList("abc", "ab", "abd"), names(ab));
+        List<String> groups = new ArrayList<>();
+        ab.groupByAuthor((author, rows, from, to) -> {
+            StringBuilder group = new StringBuilder().append(author).append(':');
+            for (int i = from; i < to; i++) {
+                group.append(' ').append(ab.getId(rows[i]));
+            }
+            groups.add(group.toString());
+        });
+        assertEquals(Arrays.asList("1: 5", "2: 1"), groups);
+    }
+
+    @Test
+    public void noRowsGiveEmptyColumns() {
+        assertEquals(0, bookDao.selectColumns(BookCriteria.authorEqualTo(1L)).size());
+    }
+
+    private static List<String> names(BookColumns columns) {
+        List<String> names = new ArrayList<>();
+        for (int row = 0; row < columns.size(); row++) {
+            names.add(columns.getName(row));
+        }
+        return names;
+    }
+}
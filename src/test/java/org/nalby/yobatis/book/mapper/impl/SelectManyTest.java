@@ -0,0 +1,82 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nalby.yobatis.book.model.Book;
+
+public class SelectManyTest extends DaoTestSupport {
+
+    @Before
+    public void insertBooks() {
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            books.add(book(id, "book" + id, 1L));
+        }
+        bookDao.insertAllBatch(books);
+    }
+
+    @After
+    public void restoreInListSize() {
+        bookDao.setInListSize(BaseDaoImpl.DEFAULT_IN_LIST_SIZE);
+    }
+
+    @Test
+    public void keysKeepTheirOrderWithoutDuplicatesOrMissingRows() {
+        Map<Long, Book> books = bookDao.selectMany(Arrays.asList(7L, 3L, 42L, 7L, 1L));
+        assertEquals(Arrays.asList(7L, 3L, 1L), new ArrayList<>(books.keySet()));
+        assertEquals("book3", books.get(3L).getName());
+        assertTrue(bookDao.selectMany(Collections.<Long>emptyList()).isEmpty());
+    }
+
+    @Test
+    public void longKeyListsAreChunked() {
+        bookDao.setInListSize(3);
+        List<Long> ids = Arrays.asList(10L, 9L, 8L, 7L, 6L, 5L, 4L, 3L, 2L, 1L);
+        Map<Long, Book> books = bookDao.selectMany(ids);
+        assertEquals(ids, new ArrayList<>(books.keySet()));
+        assertEquals(ids, new ArrayList<>(transactions.execute(status -> bookDao.selectMany(ids)).keySet()));
+    }
+
+    @Test
+    public void cachedRowsAreServedFromTheCache() {
+        bookDao.selectMany(Arrays.asList(1L, 2L));
+        jdbc.update("update book set name = 'behind the cache' where id in (1, 3)");
+        Map<Long, Book> books = bookDao.selectMany(Arrays.asList(1L, 2L, 3L));
+        assertEquals("book1", books.get(1L).getName());
+        assertEquals("behind the cache", books.get(3L).getName());
+        // Shares the entries of selectOne.
+        assertEquals("book1", bookDao.selectOne(1L).getName());
+        assertEquals("behind the cache", bookDao.selectOne(3L).getName());
+    }
+
+    @Test
+    public void rowsAreCopies() {
+        Book book = bookDao.selectMany(Collections.singletonList(1L)).get(1L);
+        book.setName("changed");
+        Book again = bookDao.selectMany(Collections.singletonList(1L)).get(1L);
+        assertNotSame(book, again);
+        assertEquals("book1", again.getName());
+    }
+
+    @Test
+    public void readWriteTransactionsSeeTheirOwnWrites() {
+        bookDao.selectMany(Collections.singletonList(1L));
+        transactions.execute(status -> {
+            bookDao.update(book(1L, "uncommitted", null));
+            assertEquals("uncommitted", bookDao.selectMany(Collections.singletonList(1L)).get(1L).getName());
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals("book1", bookDao.selectMany(Collections.singletonList(1L)).get(1L).getName());
+    }
+}
@@ -0,0 +1,104 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.nalby.yobatis.book.mapper.Page;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+import org.nalby.yobatis.book.model.criteria.CriteriaTemplate;
+
+public class SelectPageTest extends DaoTestSupport {
+
+    @Before
+    public void insertBooks() {
+        bookDao.insertAllBatch(Arrays.asList(book(1L, "b", 1L), book(2L, null, 1L), book(3L, "a", 2L),
+                book(4L, "b", 2L), book(5L, null, 2L), book(6L, "c", 1L)));
+    }
+
+    @Test
+    public void nullsComeFirstInAscendingOrder() {
+        assertEquals(Arrays.asList(2L, 5L, 3L, 1L, 4L, 6L), pageThrough(BookCriteria.authorIsNotNull().ascOrderBy("name"), 2));
+        assertEquals(Arrays.asList(2L, 5L, 3L, 1L, 4L, 6L), pageThrough(BookCriteria.authorIsNotNull().ascOrderBy("name"), 4));
+    }
+
+    @Test
+    public void nullsComeLastInDescendingOrder() {
+        assertEquals(Arrays.asList(6L, 1L, 4L, 3L, 2L, 5L), pageThrough(BookCriteria.authorIsNotNull().descOrderBy("name"), 2));
+        assertEquals(Arrays.asList(6L, 4L, 1L, 3L, 5L, 2L),
+                pageThrough(BookCriteria.authorIsNotNull().descOrderBy("name").descOrderBy("id"), 1));
+    }
+
+    @Test
+    public void pagesKeepTheConditionsOfEveryGroup() {
+        BookCriteria criteria = BookCriteria.authorEqualTo(2L).or().andNameEqualTo("c").ascOrderBy("name");
+        assertEquals(Arrays.asList(5L, 3L, 4L, 6L), pageThrough(criteria, 1));
+    }
+
+    @Test
+    public void anEmptyCriteriaPagesThroughTheTable() {
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L), pageThrough(new BookCriteria(), 5));
+    }
+
+    @Test
+    public void boundCriteriaCanBePaged() {
+        CriteriaTemplate byAuthor = CriteriaTemplate.of(BookCriteria.authorEqualTo(0L).descOrderBy("id"));
+        assertEquals(Arrays.asList(5L, 4L, 3L), pageThrough(byAuthor.bind(2L), 2));
+    }
+
+    @Test
+    public void theCriteriaIsNotModified() {
+        BookCriteria criteria = BookCriteria.authorIsNotNull().ascOrderBy("name");
+        String shape = criteria.getShape();
+        Page<Book> first = bookDao.selectPage(criteria, null, 2);
+        bookDao.selectPage(criteria, first.getNextPageToken(), 2);
+        assertEquals(shape, criteria.getShape());
+        assertEquals(1, criteria.getOredCriteria().size());
+        assertEquals(1, criteria.getSortKeys().size());
+        assertNull(criteria.getLimit());
+        // The same page again, served from the query cache.
+        assertEquals(ids(first.getRows()), ids(bookDao.selectPage(criteria, null, 2).getRows()));
+    }
+
+    @Test
+    public void theLastPageHasNoToken() {
+        Page<Book> page = bookDao.selectPage(BookCriteria.authorEqualTo(1L), null, 3);
+        assertEquals(Arrays.asList(1L, 2L, 6L), ids(page.getRows()));
+        assertNull(page.getNextPageToken());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void offsetIsRejected() {
+        bookDao.selectPage(new BookCriteria().setOffset(1L), null, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedTokensAreRejected() {
+        bookDao.selectPage(new BookCriteria(), "not a token", 2);
+    }
+
+    private static List<Long> pageThrough(BaseCriteria criteria, int pageSize) {
+        List<Long> ids = new ArrayList<>();
+        String token = null;
+        do {
+            Page<Book> page = bookDao.selectPage(criteria, token, pageSize);
+            ids.addAll(ids(page.getRows()));
+            token = page.getNextPageToken();
+        } while (token != null);
+        return ids;
+    }
+
+    private static List<Long> ids(List<Book> books) {
+        List<Long> ids = new ArrayList<>();
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+}
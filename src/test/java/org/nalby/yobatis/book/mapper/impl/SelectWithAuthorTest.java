@@ -0,0 +1,102 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nalby.yobatis.book.mapper.FetchMode;
+import org.nalby.yobatis.book.model.BookWithAuthor;
+import org.nalby.yobatis.book.model.criteria.BaseCriteria;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+public class SelectWithAuthorTest extends DaoTestSupport {
+
+    @Before
+    public void insertRows() {
+        authorDao.insertAllBatch(Arrays.asList(author(1L, "first", new Date(0)), author(2L, "second", null)));
+        bookDao.insertAllBatch(Arrays.asList(book(1L, "c", 1L), book(2L, "a", 2L), book(3L, "b", null),
+                book(4L, "d", 3L), book(5L, "a", 1L)));
+    }
+
+    @After
+    public void restoreInListSize() {
+        bookDao.setInListSize(BaseDaoImpl.DEFAULT_IN_LIST_SIZE);
+        bookDao.setInListTableSize(BaseDaoImpl.DEFAULT_IN_LIST_TABLE_SIZE);
+    }
+
+    @Test
+    public void joinOrdersByTheBookColumns() {
+        // 'name' and 'id' are columns of both tables.
+        BaseCriteria criteria = BookCriteria.idGreaterThan(0L).ascOrderBy("name").descOrderBy("id").setLimit(4L);
+        assertEquals("b.name asc,b.id desc", criteria.qualifiedOrderByClause("b"));
+        List<BookWithAuthor> joined = inTransaction(criteria, FetchMode.JOIN);
+        assertEquals(Arrays.asList(5L, 2L, 3L, 1L), ids(joined));
+        assertEquals(Arrays.asList("first", "second", null, "first"), authorNames(joined));
+        assertEquals(ids(joined), ids(inTransaction(criteria, FetchMode.BATCH)));
+        assertEquals(authorNames(joined), authorNames(inTransaction(criteria, FetchMode.BATCH)));
+    }
+
+    @Test
+    public void missingAuthorsAreNull() {
+        List<BookWithAuthor> books = inTransaction(BookCriteria.idIn(Arrays.asList(3L, 4L)).ascOrderBy("id"), FetchMode.JOIN);
+        assertEquals(Arrays.asList(3L, 4L), ids(books));
+        assertNull(books.get(0).getAuthorDetail());
+        assertNull(books.get(1).getAuthorDetail());
+    }
+
+    @Test
+    public void longInListsAreSplitInBothModes() {
+        bookDao.setInListSize(2);
+        BaseCriteria criteria = BookCriteria.idIn(Arrays.asList(1L, 2L, 3L, 5L)).descOrderBy("name").ascOrderBy("id").setLimit(3L);
+        for (FetchMode fetchMode : FetchMode.values()) {
+            List<BookWithAuthor> books = bookDao.selectWithAuthor(criteria, fetchMode);
+            assertEquals(Arrays.asList(1L, 3L, 2L), ids(books));
+            assertEquals(Arrays.asList("first", null, "second"), authorNames(books));
+        }
+        bookDao.setInListTableSize(3);
+        assertEquals(Arrays.asList(1L, 3L, 2L), ids(inTransaction(criteria, FetchMode.JOIN)));
+    }
+
+    @Test
+    public void joinGoesThroughTheCachesOutsideTransactions() {
+        BaseCriteria criteria = BookCriteria.authorEqualTo(1L).ascOrderBy("id");
+        assertEquals(Arrays.asList("c", "a"), bookNames(bookDao.selectWithAuthor(criteria, FetchMode.JOIN)));
+        jdbc.update("update book set name = 'behind the cache' where id = 1");
+        assertEquals(Arrays.asList("c", "a"), bookNames(bookDao.selectWithAuthor(criteria, FetchMode.JOIN)));
+        assertEquals(Arrays.asList("behind the cache", "a"), bookNames(inTransaction(criteria, FetchMode.JOIN)));
+    }
+
+    private static List<BookWithAuthor> inTransaction(BaseCriteria criteria, FetchMode fetchMode) {
+        return transactions.execute(status -> bookDao.selectWithAuthor(criteria, fetchMode));
+    }
+
+    private static List<Long> ids(List<BookWithAuthor> books) {
+        List<Long> ids = new ArrayList<>();
+        for (BookWithAuthor book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> bookNames(List<BookWithAuthor> books) {
+        List<String> names = new ArrayList<>();
+        for (BookWithAuthor book : books) {
+            names.add(book.getName());
+        }
+        return names;
+    }
+
+    private static List<String> authorNames(List<BookWithAuthor> books) {
+        List<String> names = new ArrayList<>();
+        for (BookWithAuthor book : books) {
+            names.add(book.getAuthorDetail() == null ? null : book.getAuthorDetail().getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,156 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.nalby.yobatis.book.datasource.SnowflakeIdGenerator;
+import org.nalby.yobatis.book.model.Book;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+import org.nalby.yobatis.book.model.criteria.CriteriaTemplate;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Runs the book dao sharded over two H2 databases, see sharding-test-context.xml.
+ */
+public class ShardingTest {
+
+    private static final CriteriaTemplate ID_OR_ID = CriteriaTemplate.of(
+            BookCriteria.idEqualTo(0L).or().andIdEqualTo(0L).ascOrderBy("name"));
+
+    private static GenericXmlApplicationContext context;
+
+    private static BookDaoImpl bookDao;
+
+    private static ShardRouter router;
+
+    private static JdbcTemplate[] shards;
+
+    @BeforeClass
+    public static void startContext() {
+        context = new GenericXmlApplicationContext("classpath:application-context.xml",
+                "classpath:dao-test-context.xml", "classpath:sharding-test-context.xml");
+        bookDao = context.getBean(BookDaoImpl.class);
+        router = context.getBean(ShardRouter.class);
+        shards = new JdbcTemplate[] {
+            new JdbcTemplate(context.getBean("primaryDataSource", DataSource.class)),
+            new JdbcTemplate(context.getBean("shard1DataSource", DataSource.class)),
+        };
+    }
+
+    @AfterClass
+    public static void closeContext() {
+        context.close();
+    }
+
+    @Before
+    public void resetDatabases() {
+        for (JdbcTemplate shard : shards) {
+            shard.update("delete from book");
+        }
+        bookDao.getEntityCache().invalidateAll();
+        bookDao.getQueryCache().invalidateAll();
+    }
+
+    @Test
+    public void insertsSpreadRowsOverTheShards() {
+        List<Long> ids = insertBooks("a", "b", "c", "d");
+        for (long id : ids) {
+            assertEquals(1, count(shards[router.shardOfId(id)], id));
+            assertEquals(0, count(shards[1 - router.shardOfId(id)], id));
+        }
+        assertEquals(2, rowCount(shards[0]));
+        assertEquals(2, rowCount(shards[1]));
+    }
+
+    @Test
+    public void insertKeepsTheGeneratedId() {
+        Book book = DaoTestSupport.book(null, "generated", 1L);
+        assertEquals(1, bookDao.insert(book));
+        assertNotNull(book.getId());
+        assertEquals(1, count(shards[router.shardOfId(book.getId())], book.getId()));
+        assertEquals("generated", bookDao.selectOne(book.getId()).getName());
+    }
+
+    @Test
+    public void insertBatchRoutesEachRecord() {
+        List<Book> books = Arrays.asList(DaoTestSupport.book(null, "a", 1L), DaoTestSupport.book(null, "b", 1L),
+                DaoTestSupport.book(null, "c", 1L));
+        assertEquals(3, bookDao.insertBatch(books));
+        for (Book book : books) {
+            assertEquals(1, count(shards[router.shardOfId(book.getId())], book.getId()));
+        }
+    }
+
+    @Test
+    public void shardOfIdRejectsIdsOfNoShard() {
+        long id = new SnowflakeIdGenerator(0).nextId(2);
+        try {
+            router.shardOfId(id);
+            throw new AssertionError("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // The id belongs to a third shard.
+        }
+    }
+
+    @Test
+    public void selectsMergeTheShardsInOrder() {
+        insertBooks("d", "b", "a", "c", "e");
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), names(bookDao.selectList(BookCriteria.authorEqualTo(1L).ascOrderBy("name"))));
+        assertEquals(Arrays.asList("e", "d"), names(bookDao.selectList(BookCriteria.authorEqualTo(1L).descOrderBy("name").setLimit(2L))));
+        assertEquals(Arrays.asList("b", "c"), names(bookDao.selectList(BookCriteria.authorEqualTo(1L).ascOrderBy("name").setOffset(1L).setLimit(2L))));
+        assertEquals(5, bookDao.count(BookCriteria.authorEqualTo(1L)));
+        assertEquals(5, bookDao.countAll());
+    }
+
+    @Test
+    public void keyCriteriaRunOnTheirShards() {
+        List<Long> ids = insertBooks("a", "b");
+        long first = ids.get(0);
+        long second = ids.get(1);
+        assertEquals(Collections.singletonList(router.shardOfId(first)), router.shardsOf(BookCriteria.idEqualTo(first)));
+        assertEquals(Arrays.asList(router.shardOfId(first), router.shardOfId(second)), router.shardsOf(BookCriteria.idIn(ids)));
+        assertEquals(Arrays.asList(router.shardOfId(first), router.shardOfId(second)), router.shardsOf(ID_OR_ID.bind(first, second)));
+        assertEquals(Collections.singletonList(router.shardOfId(second)), router.shardsOf(ID_OR_ID.bind(second, second)));
+        // A group without the key may match rows of any shard.
+        assertEquals(router.allShards(), router.shardsOf(BookCriteria.idEqualTo(first).or().andNameEqualTo("b")));
+        assertEquals(router.allShards(), router.shardsOf(new BookCriteria()));
+        assertEquals(Arrays.asList("a", "b"), names(bookDao.selectList(ID_OR_ID.bind(first, second))));
+        assertEquals("b", bookDao.selectOne(BookCriteria.idEqualTo(second)).getName());
+    }
+
+    private static List<Long> insertBooks(String ... names) {
+        List<Long> ids = new ArrayList<>();
+        for (String name : names) {
+            Book book = DaoTestSupport.book(null, name, 1L);
+            bookDao.insert(book);
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> names(List<Book> books) {
+        List<String> names = new ArrayList<>();
+        for (Book book : books) {
+            names.add(book.getName());
+        }
+        return names;
+    }
+
+    private static long count(JdbcTemplate shard, long id) {
+        return shard.queryForObject("select count(*) from book where id = ?", Long.class, id);
+    }
+
+    private static long rowCount(JdbcTemplate shard) {
+        return shard.queryForObject("select count(*) from book", Long.class);
+    }
+}
@@ -0,0 +1,83 @@
+package org.nalby.yobatis.book.mapper.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.nalby.yobatis.book.model.criteria.BookCriteria;
+
+public class UpdateBatchTest extends DaoTestSupport {
+
+    @Before
+    public void insertBooks() {
+        bookDao.insertAllBatch(Arrays.asList(book(1L, "one", 1L), book(2L, "two", 1L), book(3L, "three", 2L)));
+    }
+
+    @Test
+    public void countsFollowTheRecords() {
+        int[] counts = bookDao.updateBatch(Arrays.asList(book(3L, "3", null), book(42L, "missing", null),
+                book(1L, null, 2L), book(2L, "2", null)));
+        assertArrayEquals(new int[] {1, 0, 1, 1}, counts);
+        assertEquals("3", bookName(3));
+        assertEquals("one", bookName(1));
+        assertEquals(Long.valueOf(2), jdbc.queryForObject("select author from book where id = 1", Long.class));
+    }
+
+    @Test
+    public void updateAllBatchWritesNulls() {
+        assertArrayEquals(new int[] {1}, bookDao.updateAllBatch(Collections.singletonList(book(1L, "1", null))));
+        assertEquals("1", bookName(1));
+        assertNull(jdbc.queryForObject("select author from book where id = 1", Long.class));
+    }
+
+    @Test
+    public void batchesEvictTheirRows() {
+        bookDao.selectOne(1L);
+        bookDao.selectOne(2L);
+        bookDao.selectMany(Arrays.asList(1L, 3L));
+        bookDao.updateBatch(Arrays.asList(book(1L, "1", null), book(3L, "3", null)));
+        assertEquals("1", bookDao.selectOne(1L).getName());
+        assertEquals("3", bookDao.selectMany(Collections.singletonList(3L)).get(3L).getName());
+        // Rows left out of the batch stay cached.
+        jdbc.update("update book set name = 'behind the cache' where id = 2");
+        assertEquals("two", bookDao.selectOne(2L).getName());
+        bookDao.updateAllBatch(Collections.singletonList(book(2L, "2", 1L)));
+        assertEquals("2", bookDao.selectOne(2L).getName());
+    }
+
+    @Test
+    public void batchesInvalidateTheQueryCache() {
+        assertEquals(2, bookDao.selectList(BookCriteria.authorEqualTo(1L)).size());
+        bookDao.updateBatch(Collections.singletonList(book(3L, null, 1L)));
+        assertEquals(3, bookDao.selectList(BookCriteria.authorEqualTo(1L)).size());
+        assertEquals(3, bookDao.count(BookCriteria.authorEqualTo(1L)));
+    }
+
+    @Test
+    public void rowsCachedDuringTheTransactionAreEvictedOnCommit() {
+        transactions.execute(status -> {
+            bookDao.updateBatch(Collections.singletonList(book(1L, "committed", null)));
+            // A concurrent reader caches the row as committed before this transaction.
+            assertEquals("one", readOnAnotherThread(1L));
+            return null;
+        });
+        assertEquals("committed", bookDao.selectOne(1L).getName());
+    }
+
+    private static String readOnAnotherThread(long id) {
+        String[] name = new String[1];
+        Thread reader = new Thread(() -> name[0] = bookDao.selectOne(id).getName());
+        reader.start();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return name[0];
+    }
+}
@@ -0,0 +1,132 @@
+package org.nalby.yobatis.book.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class BookColumnsTest {
+
+    private static final byte[] PREFIX = "ab".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void rowsKeepTheirNullsAndNames() {
+        BookColumns columns = new BookColumns.Builder()
+                .add(book(1, "abc", 7L))
+                .add(book(2, null, null))
+                .add(book(3, "", 0L))
+                .add(book(4, "äbc 书", -1L))
+                .build();
+        assertEquals(4, columns.size());
+        assertEquals(Arrays.asList("1 abc 7", "2 null null", "3  0", "4 äbc 书 -1"), rows(columns));
+        assertFalse(columns.hasName(1));
+        assertTrue(columns.hasName(2));
+        assertEquals(0, columns.getAuthor(1));
+        assertFalse(columns.hasAuthor(1));
+        assertTrue(columns.hasAuthor(2));
+    }
+
+    @Test
+    public void namesAreMatchedWithoutDecoding() {
+        BookColumns columns = new BookColumns.Builder()
+                .add(book(1, "abc", 1L))
+                .add(book(2, null, 1L))
+                .add(book(3, "a", 1L))
+                .add(book(4, "ab", 1L))
+                .add(book(5, "", 1L))
+                .build();
+        assertEquals(2, columns.count(row -> columns.nameStartsWith(row, PREFIX)));
+        assertTrue(columns.nameStartsWith(0, PREFIX));
+        assertFalse(columns.nameStartsWith(1, PREFIX));
+        assertFalse(columns.nameStartsWith(1, new byte[0]));
+        assertTrue(columns.nameStartsWith(4, new byte[0]));
+        assertTrue(columns.nameStartsWith(3, PREFIX));
+        assertFalse(columns.nameStartsWith(2, PREFIX));
+    }
+
+    @Test
+    public void filtersKeepTheOrderNullsAndNames() {
+        BookColumns.Builder builder = new BookColumns.Builder();
+        for (long id = 0; id < 100; id++) {
+            builder.add(book(id, id % 5 == 0 ? null : "name" + id, id % 3 == 0 ? null : id % 3));
+        }
+        BookColumns columns = builder.build();
+        BookColumns filtered = columns.filter(row -> columns.getId(row) % 2 == 0);
+        assertEquals(50, filtered.size());
+        for (int row = 0; row < filtered.size(); row++) {
+            long id = filtered.getId(row);
+            assertEquals(row * 2, id);
+            assertEquals(id % 5 == 0 ? null : "name" + id, filtered.getName(row));
+            assertEquals(id % 3 != 0, filtered.hasAuthor(row));
+            assertEquals(id % 3, filtered.getAuthor(row));
+        }
+        assertEquals(0, columns.filter(row -> false).size());
+    }
+
+    @Test
+    public void groupsAreByAscendingAuthorWithoutNullAuthors() {
+        BookColumns.Builder builder = new BookColumns.Builder();
+        long[] authors = {5, 0, -3, 5, 40, 0, 5};
+        for (int id = 0; id < authors.length; id++) {
+            builder.add(book(id, null, authors[id]));
+        }
+        builder.add(book(7, "no author", null));
+        // Enough authors to grow the table of groups.
+        for (long id = 8; id < 108; id++) {
+            builder.add(book(id, "many", 1000 + id % 50));
+        }
+        BookColumns columns = builder.build();
+        List<String> groups = new ArrayList<>();
+        columns.groupByAuthor((author, rows, from, to) -> {
+            StringBuilder group = new StringBuilder().append(author).append(':');
+            for (int i = from; i < to; i++) {
+                group.append(' ').append(columns.getId(rows[i]));
+            }
+            groups.add(group.toString());
+        });
+        assertEquals(54, groups.size());
+        assertEquals(Arrays.asList("-3: 2", "0: 1 5", "5: 0 3 6", "40: 4", "1000: 50 100"), groups.subList(0, 5));
+        assertEquals("1049: 49 99", groups.get(53));
+    }
+
+    @Test
+    public void emptyColumnsHaveNoGroups() {
+        BookColumns columns = new BookColumns.Builder().add(book(1, "no author", null)).build();
+        List<Long> authors = new ArrayList<>();
+        columns.groupByAuthor((author, rows, from, to) -> authors.add(author));
+        assertTrue(authors.isEmpty());
+        assertEquals(0, new BookColumns.Builder().build().filter(row -> true).size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rowsAreChecked() {
+        new BookColumns.Builder().add(book(1, "a", 1L)).build().getId(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void idsMustNotBeNull() {
+        new BookColumns.Builder().add(new Book());
+    }
+
+    private static Book book(long id, String name, Long author) {
+        Book book = new Book();
+        book.setId(id);
+        book.setName(name);
+        book.setAuthor(author);
+        return book;
+    }
+
+    private static List<String> rows(BookColumns columns) {
+        List<String> rows = new ArrayList<>();
+        for (int row = 0; row < columns.size(); row++) {
+            rows.add(columns.getId(row) + " " + columns.getName(row) + " "
+                    + (columns.hasAuthor(row) ? String.valueOf(columns.getAuthor(row)) : "null"));
+        }
+        return rows;
+    }
+}
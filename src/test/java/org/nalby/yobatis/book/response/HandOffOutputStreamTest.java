@@ -0,0 +1,164 @@
+package org.nalby.yobatis.book.response;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class HandOffOutputStreamTest {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	private final CountDownLatch writing = new CountDownLatch(1);
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void stopExecutor() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void bytesReachTheTargetInOrder() throws Exception {
+		Target target = new Target(false);
+		HandOffOutputStream output = new HandOffOutputStream(target, executor, 1024);
+		for (int i = 0; i < 100; i++) {
+			output.write(new byte[] {(byte) i, (byte) (i + 1)}, 1, 1);
+		}
+		output.close();
+		output.whenWritten().get(5, TimeUnit.SECONDS);
+		byte[] expected = new byte[100];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = (byte) (i + 1);
+		}
+		assertArrayEquals(expected, target.toByteArray());
+		assertTrue(target.closed);
+	}
+
+	@Test
+	public void writesDoNotWaitForTheTarget() throws Exception {
+		Target target = new Target(true);
+		HandOffOutputStream output = new HandOffOutputStream(target, executor, 1024);
+		output.write(new byte[8]);
+		assertTrue(writing.await(5, TimeUnit.SECONDS));
+		// The target is blocked, the bytes wait in memory.
+		output.write(new byte[8]);
+		output.close();
+		assertFalse(output.whenWritten().isDone());
+		release.countDown();
+		output.whenWritten().get(5, TimeUnit.SECONDS);
+		assertEquals(16, target.size());
+	}
+
+	@Test
+	public void writesBeyondThePendingBytesFail() throws Exception {
+		Target target = new Target(true);
+		HandOffOutputStream output = new HandOffOutputStream(target, executor, 10);
+		output.write(new byte[8]);
+		assertTrue(writing.await(5, TimeUnit.SECONDS));
+		output.write(new byte[8]);
+		try {
+			output.write(new byte[8]);
+			fail("expected an IOException");
+		} catch (IOException expected) {
+			// Too slow a client.
+		}
+		release.countDown();
+		output.whenWritten().get(5, TimeUnit.SECONDS);
+		assertEquals(8, target.size());
+		assertFalse(target.closed);
+	}
+
+	@Test
+	public void cancelBeforeAnyByteIsWritten() throws Exception {
+		List<Runnable> tasks = new ArrayList<>();
+		Target target = new Target(false);
+		HandOffOutputStream output = new HandOffOutputStream(target, tasks::add, 1024);
+		output.write(new byte[8]);
+		assertTrue(output.cancel());
+		assertTrue(output.isCancelled());
+		tasks.get(0).run();
+		assertTrue(output.whenWritten().isDone());
+		assertEquals(0, target.size());
+		try {
+			output.write(new byte[8]);
+			fail("expected an IOException");
+		} catch (IOException expected) {
+			// Cancelled.
+		}
+	}
+
+	@Test
+	public void cancelOnceBytesAreWritten() throws Exception {
+		Target target = new Target(true);
+		HandOffOutputStream output = new HandOffOutputStream(target, executor, 1024);
+		output.write(new byte[8]);
+		assertTrue(writing.await(5, TimeUnit.SECONDS));
+		output.write(new byte[8]);
+		assertFalse(output.cancel());
+		release.countDown();
+		output.whenWritten().get(5, TimeUnit.SECONDS);
+		assertEquals(8, target.size());
+		assertFalse(target.closed);
+	}
+
+	@Test
+	public void rejectedWritersFailTheStream() throws Exception {
+		HandOffOutputStream output = new HandOffOutputStream(new Target(false), task -> {
+			throw new RejectedExecutionException();
+		}, 1024);
+		output.write(new byte[8]);
+		assertTrue(output.whenWritten().isDone());
+		try {
+			output.write(new byte[8]);
+			fail("expected an IOException");
+		} catch (IOException expected) {
+			// No writer.
+		}
+	}
+
+	/*
+	 * Blocks its first write until released if asked to.
+	 */
+	private class Target extends ByteArrayOutputStream {
+		private final boolean blocking;
+
+		private volatile boolean closed;
+
+		private Target(boolean blocking) {
+			this.blocking = blocking;
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			writing.countDown();
+			if (blocking) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			super.write(b, off, len);
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
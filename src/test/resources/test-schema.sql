@@ -0,0 +1,4 @@
+-- The tables of book_store.sql, in a form H2 accepts, and the lag the replica reports.
+CREATE TABLE IF NOT EXISTS author (id bigint NOT NULL AUTO_INCREMENT, name char(100), birthday date, PRIMARY KEY (id));
+CREATE TABLE IF NOT EXISTS book (id bigint NOT NULL AUTO_INCREMENT, name char(100), author bigint, PRIMARY KEY (id));
+CREATE TABLE IF NOT EXISTS replica_status (seconds_behind bigint);